@@ -1,37 +1,66 @@
-
 package coursework;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a single stock activity for a product.
  * <p>
- * Supported activity types:
+ * Supported activity types (see ActivityType):
  * - "AddToStock"     : items added to stock
  * - "RemoveFromStock": items removed from stock
  * - (optional) "AddProduct" when a product is initially added
  * <p>
- * IDs are auto-generated (A1, A2, A3, ... ) using a static counter.
- * Implements Serializable so activities can be persisted to disk.
+ * Kept small because one is created per stock movement:
+ * - ID     : long from a lock-free sequence (shown as A1, A2, A3, ...)
+ * - type   : enum constant, no String per activity
+ * - date   : int epoch day, "today" comes from a cached value (EpochDays)
+ * <p>
+ * ID sequence: IDs are handed out with one getAndIncrement. The sequence also
+ * keeps a reservation mark, moved ahead in blocks of ID_BLOCK; only the mark
+ * has to be saved (snapshot header / journal), not every ID. After a restart
+ * the sequence continues from the saved mark, so IDs are never reused.
+ * <p>
+ * Implements Serializable; the serialized form is still the old one
+ * (String ID, String name, int quantity, LocalDate date), so old data files load.
  */
 public class Activity implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    /** Auto-increment counter used to generate unique activity IDs. */
-    private static int counter = 1;
+    /** IDs reserved at a time; the mark only needs saving once per block. */
+    static final int ID_BLOCK = 1024;
+
+    /** Next ID to hand out. */
+    private static final AtomicLong nextID = new AtomicLong(1);
+
+    /** IDs below this are covered by the current reservation. */
+    private static final AtomicLong reservedUpTo = new AtomicLong(1);
 
-    /** e.g., "A1" */
-    private String activityID;
+    // serialized form = the original field layout, so legacy files still deserialize
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("activityID", String.class),
+        new ObjectStreamField("activityName", String.class),
+        new ObjectStreamField("activityQuantity", int.class),
+        new ObjectStreamField("activityDate", LocalDate.class)
+    };
 
-    /** e.g., "AddToStock" or "RemoveFromStock" */
-    private String activityName;
+    /** e.g., 1 (displayed as "A1") */
+    private transient long activityID;
+
+    /** AddToStock / RemoveFromStock / AddProduct */
+    private transient ActivityType activityType;
 
     /** Amount added/removed in this activity (non-negative) */
-    private int activityQuantity;
+    private transient int activityQuantity;
 
-    /** Date the activity occurred (uses LocalDate.now()) */
-    private LocalDate activityDate;
+    /** Day the activity occurred, as epoch day */
+    private transient int epochDay;
 
     /**
      * Creates an activity with the given name and quantity.
@@ -39,41 +68,136 @@ public class Activity implements Serializable {
      *
      * @param activityName     operation label, e.g., "AddToStock"
      * @param activityQuantity number of items (>= 0)
+     * @throws IllegalArgumentException if the name is not one of the ActivityType labels
      */
     public Activity(String activityName, int activityQuantity) {
-        this.activityID = "A" + counter++; // Auto-incremented ID
-        this.activityName = activityName;
+        this(ActivityType.fromLabel(activityName), activityQuantity);
+    }
+
+    /**
+     * Creates an activity of the given type dated today.
+     */
+    public Activity(ActivityType activityType, int activityQuantity) {
+        this(nextID(), activityType, activityQuantity, EpochDays.today());
+    }
+
+    /**
+     * Same as above, but with an explicit date (used when replaying the journal).
+     */
+    Activity(ActivityType activityType, int activityQuantity, LocalDate activityDate) {
+        this(nextID(), activityType, activityQuantity, (int) activityDate.toEpochDay());
+    }
+
+    /**
+     * Restores a saved activity with its original ID (does not touch the sequence).
+     */
+    Activity(long activityID, ActivityType activityType, int activityQuantity, int epochDay) {
+        this.activityID = activityID;
+        this.activityType = activityType;
         this.activityQuantity = activityQuantity;
-        this.activityDate = LocalDate.now();
+        this.epochDay = epochDay;
     }
 
     // --- Getters ---
 
-    /** @return auto-generated activity ID (e.g., "A27") */
-    public String getActivityID() { return activityID; }
+    /** @return auto-generated activity ID (e.g., "A27"); builds the string on each call */
+    public String getActivityID() { return "A" + activityID; }
+
+    /** @return numeric part of the activity ID (e.g., 27 for "A27"), no allocation */
+    public long getActivityNumber() { return activityID; }
+
+    /** @return activity type */
+    public ActivityType getActivityType() { return activityType; }
 
     /** @return activity type/name ("AddToStock" / "RemoveFromStock") */
-    public String getActivityName() { return activityName; }
+    public String getActivityName() { return activityType.label(); }
 
     /** @return quantity involved in this activity (>= 0) */
     public int getActivityQuantity() { return activityQuantity; }
 
+    /** @return day the activity occurred, as epoch day (no allocation) */
+    public int getEpochDay() { return epochDay; }
+
     /** @return date when the activity occurred */
-    public LocalDate getActivityDate() { return activityDate; }
+    public LocalDate getActivityDate() { return LocalDate.ofEpochDay(epochDay); }
+
+    // --- ID sequence ---
+
+    // lock-free: one getAndIncrement, plus a CAS on the mark once per ID_BLOCK IDs
+    private static long nextID() {
+        long id = nextID.getAndIncrement();
+        long mark = reservedUpTo.get();
+        while (id >= mark) {
+            long next = (id / ID_BLOCK + 1) * ID_BLOCK;
+            if (reservedUpTo.compareAndSet(mark, next)) break;
+            mark = reservedUpTo.get();
+        }
+        return id;
+    }
+
+    /**
+     * @return the reservation mark: every ID handed out so far is below it.
+     * Saving this value is enough to never reuse an ID after a restart.
+     */
+    public static long getReservedUpTo() { return reservedUpTo.get(); }
+
+    /**
+     * Continues the sequence from a saved reservation mark (after loading).
+     * IDs between the last used one and the mark are skipped, never reused.
+     * Never moves the sequence back, so several stores loaded into one JVM
+     * (e.g. the branches of a ChainInventory) keep handing out unique IDs.
+     *
+     * @param mark saved value of getReservedUpTo()
+     */
+    public static void restoreSequence(long mark) {
+        nextID.accumulateAndGet(mark, Math::max);
+        reservedUpTo.accumulateAndGet(mark, Math::max);
+    }
 
     /**
      * Used after loading persisted activities to continue IDs without collisions.
-     * Example: if the highest saved ID is "A42", we set counter to 43.
+     * Kept for existing callers; same as restoreSequence(next), so it never
+     * moves the sequence back.
      *
      * @param next next integer to use for auto-generated IDs
+     * @deprecated use restoreSequence
      */
-    public static void setCounter(int next) { counter = next; }
+    @Deprecated
+    public static void setCounter(int next) { restoreSequence(next); }
+
+    /** @return the next ID that will be handed out */
+    public static long peekNextID() { return nextID.get(); }
+
+    // --- serialization (legacy layout) ---
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("activityID", "A" + activityID);
+        f.put("activityName", activityType.label());
+        f.put("activityQuantity", activityQuantity);
+        f.put("activityDate", getActivityDate());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        String id = (String) f.get("activityID", null);
+        LocalDate date = (LocalDate) f.get("activityDate", null);
+        try {
+            activityID = Long.parseLong(id.substring(1)); // "A42" -> 42
+            activityType = ActivityType.fromLabel((String) f.get("activityName", null));
+        } catch (RuntimeException e) {
+            throw new InvalidObjectException("Bad activity " + id + ": " + e.getMessage());
+        }
+        activityQuantity = f.get("activityQuantity", 0);
+        epochDay = date == null ? 0 : (int) date.toEpochDay();
+    }
 
     @Override
     public String toString() {
-        return "Activity ID: " + activityID +
-               ", Name: " + activityName +
+        return "Activity ID: A" + activityID +
+               ", Name: " + activityType.label() +
                ", Quantity: " + activityQuantity +
-               ", Date: " + activityDate;
+               ", Date: " + getActivityDate();
     }
 }
@@ -0,0 +1,218 @@
+package coursework;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Full, append-only movement history of every product (for audits).
+ * <p>
+ * Storage is columnar and primitive, one set of columns per product ID:
+ * - day      : int epoch day
+ * - quantity : int
+ * - type     : byte, the ActivityType code
+ * That is 9 bytes per event instead of one Activity object (+ ID string and
+ * LocalDate), so years of history fit in the heap.
+ * <p>
+ * Events are kept ordered by day, so a time-range query is a binary search
+ * plus a walk over the k events in range: O(log n + k).
+ * <p>
+ * History is kept for deleted products too (keyed by ID).
+ */
+public class ActivityHistory implements StockListener {
+
+    /** Columns of one product. Guarded by its own monitor. */
+    static final class Columns {
+        int[] days;
+        int[] quantities;
+        byte[] types;
+        int size;
+        int saved; // events [0, saved) are unchanged since the last checkpoint (see DeltaSegment)
+
+        Columns(int capacity) {
+            days = new int[capacity];
+            quantities = new int[capacity];
+            types = new byte[capacity];
+        }
+
+        synchronized void append(int day, int qty, byte type) {
+            if (size == days.length) {
+                int cap = Math.max(4, size + (size >> 1));
+                days = Arrays.copyOf(days, cap);
+                quantities = Arrays.copyOf(quantities, cap);
+                types = Arrays.copyOf(types, cap);
+            }
+            int at = size;
+            if (size > 0 && day < days[size - 1]) {
+                // clock went backwards: keep the columns sorted (rare)
+                at = upperBound(day);
+                saved = Math.min(saved, at);
+                System.arraycopy(days, at, days, at + 1, size - at);
+                System.arraycopy(quantities, at, quantities, at + 1, size - at);
+                System.arraycopy(types, at, types, at + 1, size - at);
+            }
+            days[at] = day;
+            quantities[at] = qty;
+            types[at] = type;
+            size++;
+        }
+
+        // first index with days[i] >= day
+        int lowerBound(int day) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] < day) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // first index with days[i] > day
+        int upperBound(int day) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] <= day) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /** Result of a query: copied columns of the matching events, oldest first. */
+    public static final class Slice {
+        private final int[] days;
+        private final int[] quantities;
+        private final byte[] types;
+        private final int size;
+
+        Slice(int[] days, int[] quantities, byte[] types, int size) {
+            this.days = days;
+            this.quantities = quantities;
+            this.types = types;
+            this.size = size;
+        }
+
+        public int size() { return size; }
+
+        public int epochDay(int i) { return days[i]; }
+
+        public LocalDate date(int i) { return LocalDate.ofEpochDay(days[i]); }
+
+        public int quantity(int i) { return quantities[i]; }
+
+        public ActivityType type(int i) { return ActivityType.fromCode(types[i]); }
+
+        /** @return sum of quantities of all events in the slice */
+        public long totalQuantity() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) sum += quantities[i];
+            return sum;
+        }
+    }
+
+    private static final Slice EMPTY = new Slice(new int[0], new int[0], new byte[0], 0);
+
+    private final ConcurrentHashMap<String, Columns> byProduct = new ConcurrentHashMap<>();
+
+    // ---------------- recording ----------------
+
+    /** Records one event. */
+    public void record(String productID, ActivityType type, int quantity, LocalDate date) {
+        byProduct.computeIfAbsent(productID, k -> new Columns(4))
+                 .append((int) date.toEpochDay(), quantity, type.code());
+    }
+
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        byProduct.computeIfAbsent(product.getProductID(), k -> new Columns(4))
+                 .append(activity.getEpochDay(), activity.getActivityQuantity(),
+                         activity.getActivityType().code());
+    }
+
+    /** Drops everything (before a reload). */
+    public void clear() {
+        byProduct.clear();
+    }
+
+    // ---------------- queries ----------------
+
+    /**
+     * Events of one product between two dates (inclusive), optionally of one type.
+     * O(log n + k) where k is the number of events in the date range.
+     *
+     * @param type only events of this type, null for any type
+     */
+    public Slice query(String productID, ActivityType type, LocalDate from, LocalDate to) {
+        Columns c = byProduct.get(productID);
+        if (c == null) return EMPTY;
+        synchronized (c) {
+            int start = c.lowerBound((int) from.toEpochDay());
+            int end = c.upperBound((int) to.toEpochDay());
+            int n = Math.max(0, end - start);
+            int[] days = new int[n];
+            int[] qty = new int[n];
+            byte[] types = new byte[n];
+            byte code = type == null ? 0 : type.code();
+            int k = 0;
+            for (int i = start; i < end; i++) {
+                if (code != 0 && c.types[i] != code) continue;
+                days[k] = c.days[i];
+                qty[k] = c.quantities[i];
+                types[k] = c.types[i];
+                k++;
+            }
+            return new Slice(days, qty, types, k);
+        }
+    }
+
+    /** @return number of recorded events of a product */
+    public int size(String productID) {
+        Columns c = byProduct.get(productID);
+        if (c == null) return 0;
+        synchronized (c) { return c.size; }
+    }
+
+    // ---------------- snapshot support ----------------
+
+    /** Visits every product's columns (caller must keep writers out). */
+    void forEach(BiConsumer<String, Columns> visitor) {
+        for (Map.Entry<String, Columns> e : byProduct.entrySet()) visitor.accept(e.getKey(), e.getValue());
+    }
+
+    /** Installs columns read from a snapshot. */
+    void put(String productID, int[] days, int[] quantities, byte[] types) {
+        Columns c = new Columns(0);
+        c.days = days;
+        c.quantities = quantities;
+        c.types = types;
+        c.size = days.length;
+        c.saved = c.size;
+        byProduct.put(productID, c);
+    }
+
+    /** @return a product's columns, or null if it has no events */
+    Columns columns(String productID) {
+        return byProduct.get(productID);
+    }
+
+    /**
+     * Replaces a product's events from index from on with the given ones
+     * (applying a checkpoint delta); the result counts as saved.
+     */
+    void putTail(String productID, int from, int[] days, int[] quantities, byte[] types) {
+        Columns c = byProduct.computeIfAbsent(productID, k -> new Columns(0));
+        synchronized (c) {
+            int n = Math.min(from, c.size) + days.length;
+            c.days = Arrays.copyOf(c.days, n);
+            c.quantities = Arrays.copyOf(c.quantities, n);
+            c.types = Arrays.copyOf(c.types, n);
+            System.arraycopy(days, 0, c.days, n - days.length, days.length);
+            System.arraycopy(quantities, 0, c.quantities, n - days.length, days.length);
+            System.arraycopy(types, 0, c.types, n - days.length, days.length);
+            c.size = n;
+            c.saved = n;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package coursework;
+
+/**
+ * Kinds of stock activity.
+ * Each type has the display label used before this enum existed
+ * ("AddToStock", ...) and a one-byte code for compact storage.
+ */
+public enum ActivityType {
+    ADD_PRODUCT("AddProduct", (byte) 1),
+    ADD_TO_STOCK("AddToStock", (byte) 2),
+    REMOVE_FROM_STOCK("RemoveFromStock", (byte) 3);
+
+    private static final ActivityType[] BY_CODE = {null, ADD_PRODUCT, ADD_TO_STOCK, REMOVE_FROM_STOCK};
+
+    private final String label;
+    private final byte code;
+
+    ActivityType(String label, byte code) {
+        this.label = label;
+        this.code = code;
+    }
+
+    /** @return display name, e.g. "AddToStock" */
+    public String label() { return label; }
+
+    /** @return compact code (1..3) */
+    public byte code() { return code; }
+
+    /** @return the type with this code */
+    public static ActivityType fromCode(byte code) {
+        if (code <= 0 || code >= BY_CODE.length) throw new IllegalArgumentException("Unknown activity code " + code);
+        return BY_CODE[code];
+    }
+
+    /** @return the type with this label ("AddToStock", "RemoveFromStock", "AddProduct") */
+    public static ActivityType fromLabel(String label) {
+        for (ActivityType t : values()) {
+            if (t.label.equals(label)) return t;
+        }
+        throw new IllegalArgumentException("Unknown activity name " + label);
+    }
+}
@@ -0,0 +1,66 @@
+package coursework;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs ProductManager.saveToFile for one file on a background thread.
+ * <p>
+ * Coalescing: requests that arrive while a save is still queued share that
+ * save, so a burst of mutations costs one write. A request that arrives while
+ * a save is already running queues exactly one more (it may have missed the
+ * newest changes).
+ * <p>
+ * Durability acknowledgement: the returned future completes once the data
+ * is on disk, or completes exceptionally if the save failed.
+ */
+public class AsyncPersister {
+
+    private final ProductManager manager;
+    private final String path;
+    private final ExecutorService executor;
+
+    // queued but not started save (guarded by this)
+    private CompletableFuture<Void> pending;
+
+    public AsyncPersister(ProductManager manager, String path) {
+        this.manager = manager;
+        this.path = path;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "persist-" + path);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Ask for a save. Cheap to call after every mutation.
+     *
+     * @return completes when a save that started after this call has reached disk
+     */
+    public synchronized CompletableFuture<Void> requestSave() {
+        if (pending != null) return pending; // coalesce into the queued save
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        pending = f;
+        executor.execute(() -> {
+            synchronized (this) {
+                if (pending == f) pending = null; // later requests need a new save
+            }
+            if (manager.saveToFile(path)) {
+                f.complete(null);
+            } else {
+                f.completeExceptionally(new IOException("Save failed: " + path));
+            }
+        });
+        return f;
+    }
+
+    /** Waits for queued saves and stops the background thread. */
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,76 @@
+package coursework;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of ProductManager.applyBatch.
+ * - applied : true when every line was valid and the whole batch was applied
+ * - lines   : one Line per input line, in input order
+ * When any line fails, nothing is applied; valid lines are reported as VALID.
+ */
+public final class BatchResult {
+
+    /** Per-line status. */
+    public enum Status {
+        APPLIED,            // line applied (batch succeeded)
+        VALID,              // line was fine, but another line failed so nothing was applied
+        UNKNOWN_PRODUCT,    // no product with that ID
+        INVALID_QUANTITY,   // quantity < 0
+        INSUFFICIENT_STOCK, // removal larger than the stock at that point of the batch
+        STOCK_OVERFLOW      // addition would take the stock past Integer.MAX_VALUE
+    }
+
+    /** Report for one input line. */
+    public static final class Line {
+        private final int lineNumber;
+        private final StockChange change;
+        private final Status status;
+
+        Line(int lineNumber, StockChange change, Status status) {
+            this.lineNumber = lineNumber;
+            this.change = change;
+            this.status = status;
+        }
+
+        /** @return 0-based position of the line in the batch */
+        public int getLineNumber() { return lineNumber; }
+
+        public StockChange getChange() { return change; }
+
+        public Status getStatus() { return status; }
+
+        @Override
+        public String toString() {
+            return "#" + lineNumber + " " + change + ": " + status;
+        }
+    }
+
+    private final boolean applied;
+    private final boolean saved;
+    private final List<Line> lines;
+
+    BatchResult(boolean applied, boolean saved, List<Line> lines) {
+        this.applied = applied;
+        this.saved = saved;
+        this.lines = Collections.unmodifiableList(lines);
+    }
+
+    /** @return true if the whole batch was applied */
+    public boolean isApplied() { return applied; }
+
+    /** @return true if the batch was applied and then persisted successfully */
+    public boolean isSaved() { return saved; }
+
+    /** @return per-line report, in input order */
+    public List<Line> getLines() { return lines; }
+
+    /** @return number of lines that made the batch fail */
+    public int getFailureCount() {
+        int n = 0;
+        for (Line l : lines) {
+            if (l.status != Status.APPLIED && l.status != Status.VALID) n++;
+        }
+        return n;
+    }
+}
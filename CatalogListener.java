@@ -0,0 +1,17 @@
+package coursework;
+
+/**
+ * Callback for structural changes of a ProductManager's catalog.
+ * Called on the thread that made the change, after it happened.
+ */
+public interface CatalogListener {
+
+    /** A product was added with addProduct. */
+    void productAdded(Product product);
+
+    /** A product was removed with deleteProduct. */
+    void productRemoved(Product product);
+
+    /** Many products changed at once (loadFromFile, addProducts, a CSV import). */
+    void catalogReloaded();
+}
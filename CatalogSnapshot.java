@@ -0,0 +1,163 @@
+package coursework;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Immutable point-in-time view of a ProductManager's catalog
+ * (ProductManager.snapshot()), for reports and other long scans.
+ * <p>
+ * Taking one is cheap: mutations pause only while the product references are
+ * copied (no product data is copied). After that, writes go on as usual:
+ * - the first stock change of a product after the snapshot saves the
+ *   product's old quantity and date here (copy-on-first-write), later
+ *   changes cost one map lookup per open snapshot
+ * - reads return the saved values for changed products and the live values
+ *   for the others, so every read sees the catalog exactly as it was
+ * - products added later are not in the view, deleted ones still are
+ * <p>
+ * Close it when done (try-with-resources): an open snapshot keeps the old
+ * values of every product changed since, at most one entry per product.
+ */
+public final class CatalogSnapshot implements AutoCloseable {
+
+    /** One product as it was when the snapshot was taken. */
+    public static final class Item {
+        private final String productID;
+        private final String productName;
+        private final int quantity;
+        private final LocalDate lastUpdated;
+
+        Item(String productID, String productName, int quantity, LocalDate lastUpdated) {
+            this.productID = productID;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.lastUpdated = lastUpdated;
+        }
+
+        public String getProductID() { return productID; }
+
+        public String getProductName() { return productName; }
+
+        public int getQuantity() { return quantity; }
+
+        public LocalDate getLastUpdated() { return lastUpdated; }
+
+        @Override
+        public String toString() {
+            return productID + " (" + productName + "): " + quantity + ", updated " + lastUpdated;
+        }
+    }
+
+    // state of a product before its first change after the snapshot
+    private static final class PreImage {
+        final Product product; // the same ID may later belong to a new product
+        final int quantity;
+        final LocalDate lastUpdated;
+
+        PreImage(Product product, int quantity, LocalDate lastUpdated) {
+            this.product = product;
+            this.quantity = quantity;
+            this.lastUpdated = lastUpdated;
+        }
+    }
+
+    private final Product[] products; // display order at snapshot time
+    private final long lastSeq;
+    private final ConcurrentHashMap<String, PreImage> preImages = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<CatalogSnapshot> registry; // the manager's open snapshots
+
+    private HashMap<String, Integer> positions; // ID -> index, built on first find (guarded by this)
+
+    CatalogSnapshot(Product[] products, long lastSeq, CopyOnWriteArrayList<CatalogSnapshot> registry) {
+        this.products = products;
+        this.lastSeq = lastSeq;
+        this.registry = registry;
+    }
+
+    // ---------------- writer side (ProductManager, product's lock held) ----------------
+
+    /** Saves the product's current values unless already saved. Call before changing it. */
+    void preserve(Product p) {
+        String id = p.getProductID();
+        if (preImages.containsKey(id)) return;
+        preImages.putIfAbsent(id, new PreImage(p, p.getProductQuantity(), p.getEntryDate()));
+    }
+
+    // ---------------- reads ----------------
+
+    /** @return number of products in the view */
+    public int size() {
+        return products.length;
+    }
+
+    /** @return sequence number of the last mutation included in the view */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public String getProductID(int i) {
+        return products[i].getProductID();
+    }
+
+    public String getProductName(int i) {
+        return products[i].getProductName();
+    }
+
+    /** @return quantity of the i-th product when the snapshot was taken */
+    public int getQuantity(int i) {
+        Product p = products[i];
+        int live = p.getProductQuantity(); // live value first: a change saves its pre-image before it writes
+        PreImage pre = preImages.get(p.getProductID());
+        return pre != null && pre.product == p ? pre.quantity : live;
+    }
+
+    /** @return last update date of the i-th product when the snapshot was taken */
+    public LocalDate getLastUpdated(int i) {
+        Product p = products[i];
+        LocalDate live = p.getEntryDate();
+        PreImage pre = preImages.get(p.getProductID());
+        return pre != null && pre.product == p ? pre.lastUpdated : live;
+    }
+
+    /** @return the i-th product as it was, as one value */
+    public Item get(int i) {
+        Product p = products[i];
+        int qty = p.getProductQuantity();
+        LocalDate date = p.getEntryDate();
+        PreImage pre = preImages.get(p.getProductID());
+        if (pre != null && pre.product == p) {
+            qty = pre.quantity;
+            date = pre.lastUpdated;
+        }
+        return new Item(p.getProductID(), p.getProductName(), qty, date);
+    }
+
+    /** @return index of a product ID in the view, or -1 */
+    public int indexOf(String productID) {
+        synchronized (this) {
+            if (positions == null) {
+                positions = new HashMap<>(products.length * 2);
+                for (int i = 0; i < products.length; i++) positions.put(products[i].getProductID(), i);
+            }
+        }
+        Integer i = positions.get(productID);
+        return i == null ? -1 : i;
+    }
+
+    /** @return units in stock over the whole view */
+    public long getTotalStockUnits() {
+        long total = 0;
+        for (int i = 0; i < products.length; i++) total += getQuantity(i);
+        return total;
+    }
+
+    /** Stops collecting old values; the view must not be used afterwards. */
+    @Override
+    public void close() {
+        registry.remove(this);
+        preImages.clear();
+    }
+}
@@ -0,0 +1,268 @@
+package coursework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Inventory of a chain of branches, partitioned by branch.
+ * <p>
+ * - Every branch is its own ProductManager (own locks, indexes and history),
+ *   so tills of different branches never contend.
+ * - Every branch is persisted to its own file "&lt;directory&gt;/&lt;branch&gt;.dat"
+ *   (journal mode can be turned on per branch with getBranch(b).enableJournal).
+ * - Chain-wide queries (total stock of a product, branches low on a product,
+ *   search, ...) fork one task per branch on a ForkJoinPool and merge the
+ *   results pairwise, so they scale with the cores, not the branch count.
+ *   Branches are visited in name order, so merged results are in branch order.
+ * - Load and save of all branches also run in parallel.
+ * <p>
+ * Branch names are used as file names: letters, digits, '-' and '_' only.
+ */
+public class ChainInventory {
+
+    private static final String EXTENSION = ".dat";
+
+    private final File directory;
+    private final ForkJoinPool pool;
+
+    // branch name -> its store, sorted by name
+    private final ConcurrentSkipListMap<String, ProductManager> branches = new ConcurrentSkipListMap<>();
+
+    /** Chain stored in a directory, queries on the common ForkJoinPool. */
+    public ChainInventory(File directory) {
+        this(directory, ForkJoinPool.commonPool());
+    }
+
+    public ChainInventory(File directory, ForkJoinPool pool) {
+        this.directory = directory;
+        this.pool = pool;
+    }
+
+    // ---------------- branches ----------------
+
+    /**
+     * Adds an empty branch (or returns the existing one).
+     *
+     * @throws IllegalArgumentException if the name is not usable as a file name
+     */
+    public ProductManager addBranch(String branch) {
+        checkName(branch);
+        return branches.computeIfAbsent(branch, b -> new ProductManager());
+    }
+
+    /** @return the branch's store, or null if there is no such branch */
+    public ProductManager getBranch(String branch) {
+        return branches.get(branch);
+    }
+
+    /**
+     * Drops a branch from the chain (its file is kept).
+     *
+     * @return false if there is no such branch
+     */
+    public boolean removeBranch(String branch) {
+        return branches.remove(branch) != null;
+    }
+
+    /** @return branch names, sorted */
+    public List<String> getBranchNames() {
+        return new ArrayList<>(branches.keySet());
+    }
+
+    /** @return the file a branch is saved to */
+    public File branchFile(String branch) {
+        return new File(directory, branch + EXTENSION);
+    }
+
+    private static void checkName(String branch) {
+        if (branch == null || !branch.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid branch name: " + branch);
+        }
+    }
+
+    // ---------------- persistence ----------------
+
+    /**
+     * Loads every "&lt;branch&gt;.dat" of the directory in parallel, replacing
+     * branches already in memory with the same name.
+     * Returns false (errors printed) if any branch failed to load; the others
+     * are still added.
+     */
+    public boolean loadAll() {
+        File[] files = directory.listFiles((d, name) -> name.endsWith(EXTENSION)
+                && name.substring(0, name.length() - EXTENSION.length()).matches("[A-Za-z0-9_-]+"));
+        if (files == null) return true; // no directory yet: empty chain
+        List<String> names = new ArrayList<>();
+        for (File f : files) names.add(f.getName().substring(0, f.getName().length() - EXTENSION.length()));
+        if (names.isEmpty()) return true;
+        Collections.sort(names);
+        ProductManager[] loaded = new ProductManager[names.size()];
+        for (int i = 0; i < loaded.length; i++) loaded[i] = new ProductManager();
+        boolean ok = pool.invoke(new Fanout<>(names.toArray(new String[0]), loaded, 0, loaded.length,
+                (b, m) -> m.loadFromFile(branchFile(b).getPath()), Boolean::logicalAnd));
+        for (int i = 0; i < loaded.length; i++) branches.put(names.get(i), loaded[i]);
+        return ok;
+    }
+
+    /** Saves every branch to its file in parallel. Returns false if any save failed. */
+    public boolean saveAll() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Save failed: cannot create " + directory);
+            return false;
+        }
+        Boolean ok = fanOut((b, m) -> m.saveToFile(branchFile(b).getPath()), Boolean::logicalAnd);
+        return ok == null || ok;
+    }
+
+    /**
+     * Saves one branch.
+     *
+     * @return false if there is no such branch or saving failed
+     */
+    public boolean saveBranch(String branch) {
+        ProductManager m = branches.get(branch);
+        if (m == null) return false;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Save failed: cannot create " + directory);
+            return false;
+        }
+        return m.saveToFile(branchFile(branch).getPath());
+    }
+
+    // ---------------- chain-wide queries ----------------
+
+    /** @return units of one product in stock over all branches */
+    public long getTotalStock(String productID) {
+        Long total = fanOut((b, m) -> {
+            Product p = m.getProduct(productID);
+            return p == null ? 0L : (long) p.getProductQuantity();
+        }, Long::sum);
+        return total == null ? 0 : total;
+    }
+
+    /** @return quantity of one product per branch that carries it, in branch order */
+    public Map<String, Integer> getStockByBranch(String productID) {
+        return merged(fanOut((b, m) -> {
+            Product p = m.getProduct(productID);
+            return p == null ? Collections.<String, Integer>emptyMap()
+                             : Collections.singletonMap(b, p.getProductQuantity());
+        }, ChainInventory::concat));
+    }
+
+    /**
+     * Branches where a product is below its low-stock threshold
+     * (branches that do not carry it are not listed).
+     *
+     * @return branch -> quantity left, in branch order
+     */
+    public Map<String, Integer> getBranchesLowOn(String productID) {
+        return merged(fanOut((b, m) -> {
+            Product p = m.getProduct(productID);
+            return p == null || !m.isLowStock(p) ? Collections.<String, Integer>emptyMap()
+                                                 : Collections.singletonMap(b, p.getProductQuantity());
+        }, ChainInventory::concat));
+    }
+
+    /** @return number of low-stock products per branch, in branch order */
+    public Map<String, Integer> getLowStockCounts() {
+        return merged(fanOut((b, m) -> Collections.singletonMap(b, m.getLowStockProducts().size()),
+                             ChainInventory::concat));
+    }
+
+    /** @return units in stock over all products of all branches */
+    public long getTotalStockUnits() {
+        Long total = fanOut((b, m) -> m.getTotalStockUnits(), Long::sum);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * Searches every branch (ID or name contains q, like searchByIdOrName).
+     *
+     * @return branch -> matching products, in branch order; branches without
+     *         matches are left out
+     */
+    public Map<String, List<Product>> search(String q) {
+        return merged(fanOut((b, m) -> {
+            List<Product> found = m.searchByIdOrName(q);
+            return found.isEmpty() ? Collections.<String, List<Product>>emptyMap()
+                                   : Collections.singletonMap(b, found);
+        }, ChainInventory::concat));
+    }
+
+    // ---------------- fork-join ----------------
+
+    /**
+     * Runs a query on every branch in parallel and merges the results.
+     *
+     * @return merged result, or null if there are no branches
+     */
+    public <R> R fanOut(BranchQuery<R> query, BinaryOperator<R> merge) {
+        List<String> names = new ArrayList<>();
+        List<ProductManager> managers = new ArrayList<>();
+        for (Map.Entry<String, ProductManager> e : branches.entrySet()) {
+            names.add(e.getKey());
+            managers.add(e.getValue());
+        }
+        if (names.isEmpty()) return null;
+        return pool.invoke(new Fanout<>(names.toArray(new String[0]), managers.toArray(new ProductManager[0]),
+                                         0, names.size(), query, merge));
+    }
+
+    /** A query on one branch, run by fanOut. */
+    @FunctionalInterface
+    public interface BranchQuery<R> {
+        R apply(String branch, ProductManager manager);
+    }
+
+    // splits the branch range in halves down to single branches, merges left + right
+    private static final class Fanout<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] names;
+        private final ProductManager[] managers;
+        private final int from, to;
+        private final BranchQuery<R> query;
+        private final BinaryOperator<R> merge;
+
+        Fanout(String[] names, ProductManager[] managers, int from, int to,
+               BranchQuery<R> query, BinaryOperator<R> merge) {
+            this.names = names;
+            this.managers = managers;
+            this.from = from;
+            this.to = to;
+            this.query = query;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from == 1) return query.apply(names[from], managers[from]);
+            int mid = (from + to) >>> 1;
+            Fanout<R> left = new Fanout<>(names, managers, from, mid, query, merge);
+            left.fork();
+            R right = new Fanout<>(names, managers, mid, to, query, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    // left's branches come before right's, so concatenating keeps branch order
+    private static <V> Map<String, V> concat(Map<String, V> left, Map<String, V> right) {
+        if (left.isEmpty()) return right;
+        if (right.isEmpty()) return left;
+        Map<String, V> map = new LinkedHashMap<>(left);
+        map.putAll(right);
+        return map;
+    }
+
+    private static <V> Map<String, V> merged(Map<String, V> result) {
+        return result == null ? new LinkedHashMap<>() : new LinkedHashMap<>(result);
+    }
+}
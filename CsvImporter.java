@@ -0,0 +1,293 @@
+package coursework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk import of a product catalog from CSV, for files with millions of lines.
+ * <p>
+ * Format: one product per line, "id,name,quantity". Fields may be quoted
+ * ("Milk, 1L") with "" for a quote inside; a quoted field cannot span lines.
+ * An optional header line (quantity column not a number) is skipped, as are
+ * empty lines.
+ * <p>
+ * How it runs:
+ * - the file is read through a FileChannel in CHUNK_SIZE blocks, cut at the
+ *   last line break (the rest is carried into the next block)
+ * - blocks are parsed in parallel, one task per block, on one thread per core
+ * - parsed blocks are inserted strictly in file order with
+ *   ProductManager.addProducts, BATCH_SIZE products per store lock, so the
+ *   first line with an ID wins and later ones are reported as duplicates
+ * - catalog listeners get one catalogReloaded() per import, not per batch
+ * - at most 2 blocks per core are read ahead, so memory stays bounded
+ *   whatever the file size
+ * - the store is saved once at the end, not per product
+ */
+public class CsvImporter {
+
+    /** Bytes read per block. */
+    static final int CHUNK_SIZE = 4 << 20;
+
+    /** Products inserted per store lock (tills wait at most one batch). */
+    static final int BATCH_SIZE = 2048;
+
+    private final ProductManager manager;
+    private final int threads;
+
+    public CsvImporter(ProductManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads parser threads (1 = parse on one background thread)
+     */
+    public CsvImporter(ProductManager manager, int threads) {
+        this.manager = manager;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Parsed block: products plus what was wrong with the other lines. */
+    private static final class Block {
+        final int lineCount;                               // lines in the block
+        final List<Product> products = new ArrayList<>();
+        final List<Integer> productLines = new ArrayList<>(); // line in the block, per product
+        final List<ImportResult.Problem> invalid = new ArrayList<>(); // line numbers in the block
+
+        Block(int lineCount) { this.lineCount = lineCount; }
+    }
+
+    /**
+     * Imports a CSV file into the store, then saves it once with
+     * saveToFile(savePath) (skipped if savePath is null).
+     * Products inserted before a read error stay in the store.
+     *
+     * @return counts and rejected lines, or null if the file could not be read
+     *         (error printed)
+     */
+    public ImportResult importFile(Path csv, String savePath) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-import");
+            t.setDaemon(true);
+            return t;
+        });
+        Tally tally = new Tally();
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+            int readAhead = threads * 2;
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE);
+            byte[] carry = new byte[0];
+            boolean first = true;
+            boolean eof = false;
+            while (!eof) {
+                buf.clear();
+                buf.put(carry);
+                while (buf.hasRemaining() && !eof) {
+                    if (ch.read(buf) < 0) eof = true;
+                }
+                byte[] data = Arrays.copyOf(buf.array(), buf.position());
+                int end = eof ? data.length : lastLineEnd(data);
+                if (end < 0) {
+                    // no line break in a whole block: a single huge line, grow and read on
+                    if (data.length >= buf.capacity()) buf = ByteBuffer.allocate(buf.capacity() * 2);
+                    carry = data;
+                    continue;
+                }
+                carry = Arrays.copyOfRange(data, end, data.length);
+                byte[] block = end == data.length ? data : Arrays.copyOf(data, end);
+                boolean isFirst = first;
+                first = false;
+                pending.add(pool.submit(() -> parse(block, isFirst)));
+                while (pending.size() >= readAhead) insert(pending.poll().get(), tally);
+            }
+            while (!pending.isEmpty()) insert(pending.poll().get(), tally);
+        } catch (IOException e) {
+            System.err.println("Import of " + csv + " failed: " + e.getMessage());
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Import of " + csv + " failed: " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            pool.shutdownNow();
+            if (tally.imported > 0) manager.fireCatalogReloaded();
+            manager.getMetrics().productsImported(tally.imported);
+            manager.getMetrics().record(ProductManagerMetrics.Op.IMPORT, start);
+        }
+        boolean saved = savePath != null && manager.saveToFile(savePath);
+        return new ImportResult(tally.imported, tally.duplicates, tally.invalid, tally.problems, saved);
+    }
+
+    // ---------------- insert (caller thread, file order) ----------------
+
+    private static final class Tally {
+        long linesBefore;   // lines in the blocks inserted so far
+        long imported;
+        long duplicates;
+        long invalid;
+        final List<ImportResult.Problem> problems = new ArrayList<>();
+    }
+
+    private void insert(Block block, Tally tally) {
+        List<ImportResult.Problem> found = new ArrayList<>(block.invalid);
+        List<Product> all = block.products;
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            List<Product> batch = all.subList(from, Math.min(all.size(), from + BATCH_SIZE));
+            List<Product> rejected = manager.addProducts(batch, false);
+            // rejected keeps batch order, so one pass matches them to their lines
+            int r = 0;
+            for (int i = 0; i < batch.size() && r < rejected.size(); i++) {
+                if (batch.get(i) != rejected.get(r)) continue;
+                r++;
+                found.add(new ImportResult.Problem(block.productLines.get(from + i),
+                        ImportResult.Reason.DUPLICATE_ID, batch.get(i).getProductID()));
+            }
+            tally.imported += batch.size() - rejected.size();
+            tally.duplicates += rejected.size();
+        }
+        tally.invalid += block.invalid.size();
+        found.sort(Comparator.comparingLong(ImportResult.Problem::getLineNumber));
+        for (ImportResult.Problem p : found) {
+            if (tally.problems.size() == ImportResult.MAX_REPORTED) break;
+            tally.problems.add(new ImportResult.Problem(tally.linesBefore + p.getLineNumber(),
+                                                        p.getReason(), p.getDetail()));
+        }
+        tally.linesBefore += block.lineCount;
+    }
+
+    // ---------------- parse (pool threads) ----------------
+
+    // end of the last complete line (index after its '\n'), or -1 if there is none
+    private static int lastLineEnd(byte[] data) {
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+    private static Block parse(byte[] data, boolean firstBlock) {
+        int lines = 0;
+        for (byte b : data) if (b == '\n') lines++;
+        if (data.length > 0 && data[data.length - 1] != '\n') lines++; // last line without break
+        Block block = new Block(lines);
+
+        int start = 0;
+        // UTF-8 byte order mark some spreadsheet exports put first
+        if (firstBlock && data.length >= 3 && (data[0] & 0xFF) == 0xEF
+                && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) start = 3;
+        int line = 0;
+        while (start < data.length) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') end++;
+            line++;
+            int len = end - start;
+            if (len > 0 && data[end - 1] == '\r') len--;
+            if (len > 0) {
+                String text = new String(data, start, len, StandardCharsets.UTF_8);
+                parseLine(text, line, firstBlock && line == 1, block);
+            }
+            start = end + 1;
+        }
+        return block;
+    }
+
+    private static void parseLine(String text, int line, boolean mayBeHeader, Block block) {
+        List<String> fields = split(text);
+        if (fields == null) {
+            block.invalid.add(new ImportResult.Problem(line, ImportResult.Reason.INVALID_LINE, "unclosed quote"));
+            return;
+        }
+        if (fields.size() != 3) {
+            block.invalid.add(new ImportResult.Problem(line, ImportResult.Reason.INVALID_LINE,
+                    "expected 3 fields, found " + fields.size()));
+            return;
+        }
+        String id = fields.get(0).trim();
+        String name = fields.get(1).trim();
+        int quantity;
+        try {
+            quantity = Integer.parseInt(fields.get(2).trim());
+        } catch (NumberFormatException e) {
+            if (mayBeHeader) return; // "id,name,quantity"
+            block.invalid.add(new ImportResult.Problem(line, ImportResult.Reason.INVALID_LINE,
+                    "bad quantity '" + fields.get(2).trim() + "'"));
+            return;
+        }
+        if (id.isEmpty() || name.isEmpty() || quantity < 0) {
+            block.invalid.add(new ImportResult.Problem(line, ImportResult.Reason.INVALID_LINE,
+                    id.isEmpty() ? "empty ID" : name.isEmpty() ? "empty name" : "negative quantity"));
+            return;
+        }
+        block.products.add(new Product(id, name, quantity));
+        block.productLines.add(line);
+    }
+
+    // comma-separated fields with "quoted, ""fields"""; null if a quote is not closed
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    sb.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (quoted) return null;
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    /**
+     * Command line import into a data file (loaded first if it exists).
+     * Usage: java coursework.CsvImporter catalog.csv [dataFile]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java coursework.CsvImporter catalog.csv [dataFile]");
+            System.exit(2);
+        }
+        String dataFile = args.length > 1 ? args[1] : "data.dat";
+        ProductManager manager = new ProductManager();
+        if (new File(dataFile).exists() && !manager.loadFromFile(dataFile)) System.exit(1);
+        long start = System.nanoTime();
+        ImportResult result = new CsvImporter(manager).importFile(Paths.get(args[0]), dataFile);
+        if (result == null) System.exit(1);
+        System.out.printf("%s in %.1f s%n", result, (System.nanoTime() - start) / 1e9);
+        for (ImportResult.Problem p : result.getProblems()) System.out.println("  " + p);
+        if (result.getProblems().size() < result.getDuplicateCount() + result.getInvalidCount()) {
+            System.out.println("  ...");
+        }
+    }
+}
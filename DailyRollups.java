@@ -0,0 +1,273 @@
+package coursework;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Per-product, per-day totals of units added (AddToStock) and removed
+ * (RemoveFromStock), kept up to date on every stock change.
+ * <p>
+ * Each product has a short list of days with movement and, per day, the
+ * cumulative totals up to and including that day:
+ * - update : the change is almost always for today = the last entry, so it is
+ *            one addition (O(1)); a new day appends one entry
+ * - period : total over [from, to] = cumulative(to) - cumulative(from - 1),
+ *            two binary searches, independent of the number of movements
+ * Top/slow movers over a period are one pass over the products with a
+ * bounded heap, O(n log N), without touching raw activities.
+ * <p>
+ * Days without movement take no space, so rarely moved products stay tiny.
+ */
+public class DailyRollups implements StockListener {
+
+    /** Units moved by one product (or the whole catalog) in a period. */
+    public static final class Movement {
+        private final String productID;
+        private final long unitsIn;
+        private final long unitsOut;
+
+        Movement(String productID, long unitsIn, long unitsOut) {
+            this.productID = productID;
+            this.unitsIn = unitsIn;
+            this.unitsOut = unitsOut;
+        }
+
+        /** @return product ID, or null for catalog-wide totals */
+        public String getProductID() { return productID; }
+
+        /** @return units added to stock (AddToStock) */
+        public long getUnitsIn() { return unitsIn; }
+
+        /** @return units removed from stock (RemoveFromStock, i.e. sold) */
+        public long getUnitsOut() { return unitsOut; }
+
+        @Override
+        public String toString() {
+            return (productID == null ? "All products" : productID) + ": in " + unitsIn + ", out " + unitsOut;
+        }
+    }
+
+    /** Days with movement of one product plus cumulative totals. Guarded by its monitor. */
+    private static final class Series {
+        int[] days = new int[4];
+        long[] cumIn = new long[4];
+        long[] cumOut = new long[4];
+        int size;
+
+        synchronized void add(int day, long in, long out) {
+            if (size > 0 && days[size - 1] == day) {
+                cumIn[size - 1] += in;
+                cumOut[size - 1] += out;
+                return;
+            }
+            if (size == days.length) {
+                int cap = size + (size >> 1) + 1;
+                days = Arrays.copyOf(days, cap);
+                cumIn = Arrays.copyOf(cumIn, cap);
+                cumOut = Arrays.copyOf(cumOut, cap);
+            }
+            int at = size == 0 || day > days[size - 1] ? size : upperBound(day);
+            if (at < size && at > 0 && days[at - 1] == day) {
+                at--; // older day that already has an entry
+            } else {
+                // new entry, starting from the cumulative totals of the day before
+                System.arraycopy(days, at, days, at + 1, size - at);
+                System.arraycopy(cumIn, at, cumIn, at + 1, size - at);
+                System.arraycopy(cumOut, at, cumOut, at + 1, size - at);
+                days[at] = day;
+                cumIn[at] = at > 0 ? cumIn[at - 1] : 0;
+                cumOut[at] = at > 0 ? cumOut[at - 1] : 0;
+                size++;
+            }
+            // a change for an older day also moves every later total (rare: clock change / replay)
+            for (int i = at; i < size; i++) {
+                cumIn[i] += in;
+                cumOut[i] += out;
+            }
+        }
+
+        // first index with days[i] > day
+        int upperBound(int day) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] <= day) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        synchronized long in(int from, int to) {
+            return cumAt(cumIn, to) - cumAt(cumIn, from - 1);
+        }
+
+        synchronized long out(int from, int to) {
+            return cumAt(cumOut, to) - cumAt(cumOut, from - 1);
+        }
+
+        // cumulative total up to and including the day
+        private long cumAt(long[] cum, int day) {
+            int i = upperBound(day) - 1;
+            return i < 0 ? 0 : cum[i];
+        }
+
+        // per-day differences of one cumulative column over [from, to]
+        synchronized long[] daily(long[] cum, int from, int to) {
+            long[] result = new long[to - from + 1];
+            for (int i = upperBound(from - 1); i < size && days[i] <= to; i++) {
+                result[days[i] - from] = cum[i] - (i > 0 ? cum[i - 1] : 0);
+            }
+            return result;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Series> byProduct = new ConcurrentHashMap<>();
+
+    // ---------------- updates ----------------
+
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        record(product.getProductID(), activity.getActivityType(),
+               activity.getActivityQuantity(), activity.getEpochDay());
+    }
+
+    /**
+     * Adds one movement. ADD_PRODUCT only registers the product (initial stock
+     * is not a movement).
+     *
+     * @param type kind of movement
+     */
+    public void record(String productID, ActivityType type, int quantity, int epochDay) {
+        Series s = byProduct.computeIfAbsent(productID, k -> new Series());
+        if (type == ActivityType.ADD_TO_STOCK) s.add(epochDay, quantity, 0);
+        else if (type == ActivityType.REMOVE_FROM_STOCK) s.add(epochDay, 0, quantity);
+    }
+
+    /** Forgets a product (deleted from the catalog). */
+    public void remove(String productID) {
+        byProduct.remove(productID);
+    }
+
+    /** Drops everything (before a reload). */
+    public void clear() {
+        byProduct.clear();
+    }
+
+    /**
+     * Rebuilds totals from saved movement history.
+     *
+     * @param include which product IDs to take (history also has deleted products)
+     */
+    void addAll(ActivityHistory history, Predicate<String> include) {
+        history.forEach((id, c) -> {
+            if (!include.test(id)) return;
+            synchronized (c) {
+                for (int i = 0; i < c.size; i++) record(id, ActivityType.fromCode(c.types[i]), c.quantities[i], c.days[i]);
+            }
+        });
+    }
+
+    // ---------------- queries ----------------
+
+    /**
+     * @return units in/out of one product between two dates (inclusive)
+     */
+    public Movement totals(String productID, LocalDate from, LocalDate to) {
+        Series s = byProduct.get(productID);
+        if (s == null) return new Movement(productID, 0, 0);
+        int f = (int) from.toEpochDay(), t = (int) to.toEpochDay();
+        return new Movement(productID, s.in(f, t), s.out(f, t));
+    }
+
+    /**
+     * @return units in/out of all products between two dates (inclusive)
+     */
+    public Movement catalogTotals(LocalDate from, LocalDate to) {
+        int f = (int) from.toEpochDay(), t = (int) to.toEpochDay();
+        long in = 0, out = 0;
+        for (Series s : byProduct.values()) {
+            in += s.in(f, t);
+            out += s.out(f, t);
+        }
+        return new Movement(null, in, out);
+    }
+
+    /**
+     * Units removed from stock per day, e.g. "sold per day last month".
+     *
+     * @return one value per day from..to (index 0 = from)
+     */
+    public long[] dailyUnitsOut(String productID, LocalDate from, LocalDate to) {
+        int f = (int) from.toEpochDay(), t = (int) to.toEpochDay();
+        if (t < f) return new long[0];
+        Series s = byProduct.get(productID);
+        if (s == null) return new long[t - f + 1];
+        return s.daily(s.cumOut, f, t);
+    }
+
+    /**
+     * @return up to n products with the most units removed in the period, most first
+     */
+    public List<Movement> topMovers(LocalDate from, LocalDate to, int n) {
+        int f = (int) from.toEpochDay(), t = (int) to.toEpochDay();
+        // min-heap of the best n so far
+        Comparator<Movement> rank = Comparator.comparingLong(Movement::getUnitsOut)
+                .thenComparing(Movement::getProductID, Comparator.reverseOrder());
+        PriorityQueue<Movement> best = new PriorityQueue<>(Math.max(1, n), rank);
+        if (n <= 0) return new ArrayList<>();
+        for (Map.Entry<String, Series> e : byProduct.entrySet()) {
+            long out = e.getValue().out(f, t);
+            if (out == 0) continue;
+            offer(best, n, rank, e.getKey(), e.getValue(), f, t, out);
+        }
+        return drain(best);
+    }
+
+    /**
+     * Products of the catalog with the fewest units removed in the period
+     * (products without any movement count as 0).
+     *
+     * @param catalog products to rank (the current catalog)
+     * @return up to n products, slowest first
+     */
+    public List<Movement> slowMovers(Iterable<Product> catalog, LocalDate from, LocalDate to, int n) {
+        int f = (int) from.toEpochDay(), t = (int) to.toEpochDay();
+        // max-heap of the slowest n so far
+        Comparator<Movement> rank = Comparator.comparingLong(Movement::getUnitsOut)
+                .thenComparing(Movement::getProductID).reversed();
+        PriorityQueue<Movement> slowest = new PriorityQueue<>(Math.max(1, n), rank);
+        if (n <= 0) return new ArrayList<>();
+        for (Product p : catalog) {
+            Series s = byProduct.get(p.getProductID());
+            long out = s == null ? 0 : s.out(f, t);
+            offer(slowest, n, rank, p.getProductID(), s, f, t, out);
+        }
+        return drain(slowest);
+    }
+
+    // keep the n best entries by "rank" (the heap head is the weakest kept entry)
+    private static void offer(PriorityQueue<Movement> heap, int n, Comparator<Movement> rank,
+                              String id, Series s, int f, int t, long out) {
+        if (heap.size() == n) {
+            Movement weakest = heap.peek();
+            if (rank.compare(new Movement(id, 0, out), weakest) <= 0) return;
+            heap.poll();
+        }
+        heap.add(new Movement(id, s == null ? 0 : s.in(f, t), out));
+    }
+
+    // heap contents, strongest first
+    private static List<Movement> drain(PriorityQueue<Movement> heap) {
+        ArrayList<Movement> list = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) list.add(heap.poll());
+        Collections.reverse(list);
+        return list;
+    }
+}
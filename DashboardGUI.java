@@ -5,7 +5,11 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 /**
  * Simple Swing GUI to exercise the coursework features:
  * - Add/Delete product
@@ -14,7 +18,10 @@ import java.util.ArrayList;
  * - Show last 4 activities (sorted by quantity)
  *
  * Notes:
- * - Auto-loads saved data on startup, and auto-saves after each successful change.
+ * - Auto-loads saved data on startup, and auto-saves after each successful change
+ *   (journal mode: each save only appends the change to data.dat.journal).
+ * - Loading, saving, search and sort run off the Swing event thread; the status
+ *   bar at the bottom shows what is running.
  * - Keeps the UI straightforward with CardLayout for different panels.
  */
 
@@ -44,7 +51,7 @@ public class DashboardGUI extends JFrame {
 
     // Table and model
     private JTable table;
-    private DefaultTableModel model;
+    private ProductTableModel model;
 
     // Search and sort
     private JTextField txtSearch;
@@ -53,10 +60,19 @@ public class DashboardGUI extends JFrame {
     // Clock
     private JLabel lblClock;
 
+    // Status bar (background work)
+    private JProgressBar progress;
+    private JLabel lblStatus;
+    private int backgroundTasks; // EDT only
+
+    // what the table shows: insertion order (null), or one of the manager's sorted views and its order
+    private Supplier<List<Product>> tableView;
+    private Comparator<Product> tableOrder;
+
     public DashboardGUI() {
         setTitle("Supermarket Dashboard");
         setSize(1200, 700);
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE); // windowClosing saves, then exits
         setLocationRelativeTo(null);
         setLayout(new BorderLayout(8,8));
 
@@ -121,21 +137,135 @@ public class DashboardGUI extends JFrame {
         // search & sort listeners
         btnSearch.addActionListener(e -> refreshTableWithSearch());
         btnSortName.addActionListener(e -> {
-            manager.sortByNameAsc();
-            refreshTable();
-            JOptionPane.showMessageDialog(this, "Sorted by name (A → Z).");
+            tableView = () -> manager.sortByNameAsc();
+            tableOrder = SortedViews.BY_NAME;
+            refreshTable("Sorted by name (A → Z).");
         });
         btnSortQty.addActionListener(e -> {
-            manager.sortByQuantityAsc();
-            refreshTable();
-            JOptionPane.showMessageDialog(this, "Sorted by quantity (low → high).");
+            tableView = () -> manager.sortByQuantityAsc();
+            tableOrder = SortedViews.BY_STOCK;
+            refreshTable("Sorted by quantity (low → high).");
         });
 
-        // auto load previously saved data (if have), then refresh the table
-        manager.loadFromFile("data.dat");
-        refreshTable();
+        // BOTTOM status bar
+        JPanel statusBar = new JPanel(new BorderLayout(10, 0));
+        lblStatus = new JLabel("Ready");
+        progress = new JProgressBar(0, 100);
+        progress.setVisible(false);
+        statusBar.add(lblStatus, BorderLayout.CENTER);
+        statusBar.add(progress, BorderLayout.EAST);
+        add(statusBar, BorderLayout.SOUTH);
+
+        // make sure the last queued auto-save reaches disk before the JVM exits;
+        // the save runs in the background, the window stays painted (but disabled) meanwhile
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                if (!isEnabled()) return; // already closing
+                setEnabled(false);
+                lblStatus.setText("Saving data.dat ...");
+                progress.setIndeterminate(true);
+                progress.setVisible(true);
+                manager.saveToFileAsync("data.dat").whenComplete((ok, ex) -> SwingUtilities.invokeLater(() -> {
+                    if (ex != null) System.err.println("Final save failed: " + ex.getMessage());
+                    dispose();
+                    System.exit(0);
+                }));
+            }
+        });
 
         setVisible(true);
+
+        // auto load previously saved data (if have) in the background, then refresh the table
+        loadInBackground();
+    }
+
+    // load data.dat off the EDT with a progress bar; the UI is disabled meanwhile
+    private void loadInBackground() {
+        setInputEnabled(false);
+        lblStatus.setText("Loading data.dat ...");
+        progress.setIndeterminate(false);
+        progress.setValue(0);
+        progress.setVisible(true);
+        SwingWorker<String, Void> loader = new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                manager.loadFromFile("data.dat", this::setProgress);
+                try {
+                    manager.enableJournal("data.dat"); // auto-saves now append to data.dat.journal
+                    return null;
+                } catch (java.io.IOException ex) {
+                    return ex.getMessage();
+                }
+            }
+
+            @Override
+            protected void done() {
+                progress.setVisible(false);
+                setInputEnabled(true);
+                lblStatus.setText("Loaded " + manager.size() + " products.");
+                refreshTable();
+                try {
+                    String journalError = get();
+                    if (journalError != null) {
+                        JOptionPane.showMessageDialog(DashboardGUI.this,
+                                "Journal unavailable, saving full snapshots: " + journalError,
+                                "Warning", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(DashboardGUI.this, "Load failed: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        loader.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) progress.setValue((Integer) e.getNewValue());
+        });
+        loader.execute();
+    }
+
+    // run work off the EDT (indeterminate progress), then hand the result to onDone on the EDT
+    private <T> void runInBackground(String label, Callable<T> work, Consumer<T> onDone) {
+        backgroundTasks++;
+        lblStatus.setText(label);
+        progress.setIndeterminate(true);
+        progress.setVisible(true);
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                if (--backgroundTasks == 0) {
+                    progress.setVisible(false);
+                    lblStatus.setText("Ready");
+                }
+                try {
+                    onDone.accept(get());
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(DashboardGUI.this, label + " failed: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // queue a background save; bursts of changes are coalesced into one write
+    private void autoSave() {
+        manager.saveToFileAsync("data.dat").whenComplete((v, ex) -> {
+            if (ex == null) return;
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    "Auto-save failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        });
+    }
+
+    private void setInputEnabled(boolean enabled) {
+        for (JButton b : new JButton[]{navAdd, navDelete, navDisplay, navAddStock, navRemoveStock,
+                navActivities, btnSearch, btnSortName, btnSortQty}) {
+            b.setEnabled(enabled);
+        }
     }
 
     private void updateClock() {
@@ -185,9 +315,8 @@ public class DashboardGUI extends JFrame {
                     JOptionPane.showMessageDialog(this, "Product ID already exists.", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                manager.saveToFile("data.dat");  // <--- AUTO-SAVE
+                autoSave();  // AUTO-SAVE (background)
                 JOptionPane.showMessageDialog(this, "Product added successfully.");
-                refreshTable();
                 txtID_add.setText(""); txtName_add.setText(""); txtQty_add.setText("");
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Quantity must be a number.", "Invalid input", JOptionPane.ERROR_MESSAGE);
@@ -223,9 +352,8 @@ public class DashboardGUI extends JFrame {
             if (!manager.deleteProduct(id)) {
                 JOptionPane.showMessageDialog(this, "Product not found.", "Error", JOptionPane.ERROR_MESSAGE);
             } else {
-                 manager.saveToFile("data.dat");  // <--- AUTO-SAVE
+                 autoSave();  // AUTO-SAVE (background)
                 JOptionPane.showMessageDialog(this, "Product deleted.");
-                refreshTable();
                 txtID_delete.setText(""); chkDeleteConfirm.setSelected(false);
             }
         });
@@ -257,9 +385,8 @@ public class DashboardGUI extends JFrame {
                 if (!manager.addToStock(id, q)) {
                     JOptionPane.showMessageDialog(this, "Failed to add stock. Check ID or quantity.", "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    manager.saveToFile("data.dat");  // AUTO-SAVE
+                    autoSave();  // AUTO-SAVE (background)
                     JOptionPane.showMessageDialog(this, "Stock added.");
-                    refreshTable();
                     txtStockID.setText(""); txtStockQty.setText("");
                 }
             } catch (NumberFormatException ex) {
@@ -294,9 +421,8 @@ public class DashboardGUI extends JFrame {
                 if (!manager.removeFromStock(id, q)) {
                     JOptionPane.showMessageDialog(this, "Failed to remove stock. Check ID, quantity or available stock.", "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    manager.saveToFile("data.dat");  // AUTO-SAVE
+                    autoSave();  // AUTO-SAVE (background)
                     JOptionPane.showMessageDialog(this, "Stock removed.");
-                    refreshTable();
                     txtRemID.setText(""); txtRemQty.setText("");
                 }
             } catch (NumberFormatException ex) {
@@ -342,25 +468,19 @@ public class DashboardGUI extends JFrame {
         JPanel p = new JPanel(new BorderLayout(10,10));
         p.setBorder(BorderFactory.createTitledBorder("Products"));
 
-        String[] cols = {"ID", "Name", "Quantity", "Last Updated", "Low Stock"};
-        model = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int row, int column) { return false; }
-        };
+        // rows are read lazily from the products and repaint themselves on stock changes
+        model = new ProductTableModel(manager);
         table = new JTable(model);
 
-        // row renderer for low stock highlight
+        // row renderer for low stock highlight (asks the manager's low-stock index)
         table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable t, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
                 Component c = super.getTableCellRendererComponent(t, value, isSelected, hasFocus, row, col);
-                try {
-                    int qty = Integer.parseInt(t.getValueAt(row, 2).toString());
-                    if (!isSelected && qty < 5) {
-                        c.setBackground(new Color(255, 230, 230)); // light red
-                    } else {
-                        c.setBackground(isSelected ? t.getSelectionBackground() : t.getBackground());
-                    }
-                } catch (Exception ex) {
+                boolean low = manager.isLowStock(model.getProductAt(row));
+                if (!isSelected && low) {
+                    c.setBackground(new Color(255, 230, 230)); // light red
+                } else {
                     c.setBackground(isSelected ? t.getSelectionBackground() : t.getBackground());
                 }
                 return c;
@@ -373,33 +493,30 @@ public class DashboardGUI extends JFrame {
         return p;
     }
 
-    // refresh table with all products
+    // show all products (in the current sort order); later changes update rows by themselves
     private void refreshTable() {
-   
-        model.setRowCount(0);
-        for (Product p : manager.getAllProducts()) {
-            model.addRow(new Object[]{
-                p.getProductID(),
-                p.getProductName(),
-                p.getProductQuantity(),
-                p.getEntryDate(),                         // <-- fill "Last Updated"
-                p.getProductQuantity() < 5 ? "⚠ LOW" : ""
-            });
-        }
+        refreshTable(null);
+    }
 
+    // same, then confirm with a message (null: no message)
+    private void refreshTable(String done) {
+        Supplier<List<Product>> view = tableView;
+        Comparator<Product> order = tableOrder;
+        runInBackground("Preparing table ...", view == null ? manager::getAllProducts : view::get, list -> {
+            model.setProducts(list, view, order);
+            if (done != null) JOptionPane.showMessageDialog(this, done);
+        });
     }
 
     // refresh table with search results (id or name)
     private void refreshTableWithSearch() {
         String q = txtSearch.getText();
-        ArrayList<Product> list = manager.searchByIdOrName(q);
-        model.setRowCount(0);
-        for (Product p : list) {
-            model.addRow(new Object[]{p.getProductID(), p.getProductName(), p.getProductQuantity(),  p.getProductQuantity() < 5 ? "⚠ LOW" : ""});
-        }
-        if (list.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No matching products found.", "Search", JOptionPane.INFORMATION_MESSAGE);
-        }
+        runInBackground("Searching ...", () -> manager.searchByIdOrName(q), list -> {
+            model.setProducts(list, () -> manager.searchByIdOrName(q), null);
+            if (list.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No matching products found.", "Search", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
     }
 
     // main
@@ -0,0 +1,225 @@
+package coursework;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Checksummed delta segment: the products that changed between two
+ * checkpoints of a ProductManager (see enableCheckpoints), so a checkpoint
+ * costs the size of the change, not the size of the catalog.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header  : int magic "SMKD", int version, long baseSeq, long lastSeq,
+ *           long activityMark, int entryCount (36 bytes)
+ * entries : byte kind, str id, then
+ *           - CHANGED / ADDED : product record as in SnapshotFormat (current version)
+ *           - DELETED         : nothing
+ *           then the product's history tail: int from, int n, n ints epoch day,
+ *           n ints quantity, n bytes type (replaces its events from index from on)
+ * trailer : int CRC32 of everything before it
+ * </pre>
+ * baseSeq is the sequence number of the catalog the delta applies to (the
+ * previous checkpoint), lastSeq the one it brings it to, so deltas form a
+ * chain on top of the base file. ADDED products move to the end of the
+ * display order (in entry order), CHANGED ones keep their place.
+ * <p>
+ * A segment is used whole or not at all: read() rejects a short file, a
+ * checksum mismatch or a record that does not decode.
+ */
+public final class DeltaSegment {
+
+    public static final int MAGIC = 0x534D4B44; // "SMKD"
+    public static final int VERSION = 1;
+
+    static final byte CHANGED = 1;
+    static final byte ADDED = 2;
+    static final byte DELETED = 3;
+
+    private static final int HEADER_SIZE = 36;
+
+    private DeltaSegment() { }
+
+    /** One changed product of a segment. */
+    private static final class Entry {
+        final byte kind;
+        final String productID;
+        final Product product; // null for DELETED
+        final int historyFrom;
+        final int[] days;
+        final int[] quantities;
+        final byte[] types;
+
+        Entry(byte kind, String productID, Product product, int historyFrom,
+              int[] days, int[] quantities, byte[] types) {
+            this.kind = kind;
+            this.productID = productID;
+            this.product = product;
+            this.historyFrom = historyFrom;
+            this.days = days;
+            this.quantities = quantities;
+            this.types = types;
+        }
+    }
+
+    /** Decoded segment. */
+    public static final class Delta {
+        public final long baseSeq;
+        public final long lastSeq;
+        public final long activityMark;
+        private final List<Entry> entries;
+
+        private Delta(long baseSeq, long lastSeq, long activityMark, List<Entry> entries) {
+            this.baseSeq = baseSeq;
+            this.lastSeq = lastSeq;
+            this.activityMark = activityMark;
+            this.entries = entries;
+        }
+
+        /** @return number of products in the segment */
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    // ---------------- writing ----------------
+
+    /** Builds one segment in memory (ProductManager, mutations paused). */
+    static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count;
+
+        Writer(long baseSeq, long lastSeq, long activityMark) {
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(baseSeq);
+                out.writeLong(lastSeq);
+                out.writeLong(activityMark);
+                out.writeInt(0); // entry count, patched by finish()
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // cannot happen for an in-memory stream
+            }
+        }
+
+        /**
+         * Adds one product with its unsaved history events, which then count
+         * as saved.
+         *
+         * @param product current product, null for DELETED
+         * @param history the product's history columns, or null if it has none
+         */
+        void add(byte kind, String productID, Product product, ActivityHistory.Columns history) {
+            try {
+                out.writeByte(kind);
+                SnapshotFormat.writeString(out, productID);
+                if (kind != DELETED) SnapshotFormat.writeProduct(out, product);
+                if (history == null) {
+                    out.writeInt(0);
+                    out.writeInt(0);
+                } else {
+                    synchronized (history) {
+                        int from = history.saved;
+                        out.writeInt(from);
+                        out.writeInt(history.size - from);
+                        for (int k = from; k < history.size; k++) out.writeInt(history.days[k]);
+                        for (int k = from; k < history.size; k++) out.writeInt(history.quantities[k]);
+                        out.write(history.types, from, history.size - from);
+                        history.saved = history.size;
+                    }
+                }
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** @return the finished segment, checksum included */
+        byte[] finish() {
+            byte[] body = bytes.toByteArray();
+            ByteBuffer.wrap(body).putInt(HEADER_SIZE - 4, count);
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            byte[] image = new byte[body.length + 4];
+            System.arraycopy(body, 0, image, 0, body.length);
+            ByteBuffer.wrap(image).putInt(body.length, (int) crc.getValue());
+            return image;
+        }
+    }
+
+    // ---------------- reading ----------------
+
+    /** Reads and verifies a segment file. */
+    public static Delta read(File file) throws IOException {
+        byte[] image = Files.readAllBytes(file.toPath());
+        if (image.length < HEADER_SIZE + 4) throw new IOException("Truncated delta segment: " + file);
+        ByteBuffer buf = ByteBuffer.wrap(image);
+        CRC32 crc = new CRC32();
+        crc.update(image, 0, image.length - 4);
+        if ((int) crc.getValue() != buf.getInt(image.length - 4)) {
+            throw new IOException("Checksum mismatch in delta segment: " + file);
+        }
+        if (buf.getInt(0) != MAGIC) throw new IOException("Not a delta segment: " + file);
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Unsupported delta segment version " + buf.getInt(4) + ": " + file);
+        }
+        try {
+            int count = buf.getInt(32);
+            List<Entry> entries = new ArrayList<>(count);
+            buf.position(HEADER_SIZE);
+            for (int i = 0; i < count; i++) entries.add(readEntry(buf));
+            return new Delta(buf.getLong(8), buf.getLong(16), buf.getLong(24), entries);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt delta segment: " + file, e);
+        }
+    }
+
+    private static Entry readEntry(ByteBuffer buf) {
+        byte kind = buf.get();
+        String id = SnapshotFormat.readString(buf);
+        Product p = kind == DELETED ? null : SnapshotFormat.readProduct(buf);
+        int from = buf.getInt();
+        int n = buf.getInt();
+        int[] days = new int[n];
+        int[] qty = new int[n];
+        byte[] types = new byte[n];
+        for (int k = 0; k < n; k++) days[k] = buf.getInt();
+        for (int k = 0; k < n; k++) qty[k] = buf.getInt();
+        buf.get(types);
+        return new Entry(kind, id, p, from, days, qty, types);
+    }
+
+    // ---------------- applying ----------------
+
+    /**
+     * Applies a chain of deltas (oldest first, each starting where the
+     * previous one ended) to a decoded snapshot.
+     *
+     * @return the catalog as of the last delta (base itself if there are none)
+     */
+    static SnapshotFormat.Snapshot apply(SnapshotFormat.Snapshot base, List<Delta> chain) {
+        if (chain.isEmpty()) return base;
+        LinkedHashMap<String, Product> products = new LinkedHashMap<>(base.products.size() * 4 / 3 + 16);
+        for (Product p : base.products) products.put(p.getProductID(), p);
+        ActivityHistory history = base.history != null ? base.history : new ActivityHistory();
+        long activityMark = base.activityMark;
+        for (Delta d : chain) {
+            for (Entry e : d.entries) {
+                if (e.kind != CHANGED) products.remove(e.productID);
+                if (e.kind != DELETED) products.put(e.productID, e.product);
+                if (e.days.length > 0 || history.columns(e.productID) != null) {
+                    history.putTail(e.productID, e.historyFrom, e.days, e.quantities, e.types);
+                }
+            }
+            activityMark = Math.max(activityMark, d.activityMark);
+        }
+        long lastSeq = chain.get(chain.size() - 1).lastSeq;
+        return new SnapshotFormat.Snapshot(new ArrayList<>(products.values()), lastSeq, activityMark, history);
+    }
+}
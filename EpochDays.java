@@ -0,0 +1,60 @@
+package coursework;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Cached "today" for hot paths.
+ * LocalDate.now() reads the clock, resolves the time zone and allocates on
+ * every call; here that only happens once per day. Other calls are one
+ * currentTimeMillis() and a range check.
+ */
+final class EpochDays {
+
+    /** Today and the millisecond range it covers (immutable, replaced at midnight). */
+    private static final class Today {
+        final int day;
+        final LocalDate date;
+        final long from;   // first millisecond of the day (inclusive)
+        final long until;  // first millisecond of the next day (exclusive)
+
+        Today(int day, LocalDate date, long from, long until) {
+            this.day = day;
+            this.date = date;
+            this.from = from;
+            this.until = until;
+        }
+    }
+
+    private static volatile Today today = compute();
+
+    private EpochDays() { }
+
+    /** @return today's epoch day in the system time zone */
+    static int today() {
+        return current().day;
+    }
+
+    /** @return today's date (shared instance, no allocation) */
+    static LocalDate todayDate() {
+        return current().date;
+    }
+
+    private static Today current() {
+        Today t = today;
+        long now = System.currentTimeMillis();
+        if (now < t.from || now >= t.until) {
+            t = compute();
+            today = t;
+        }
+        return t;
+    }
+
+    private static Today compute() {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.now(zone);
+        long from = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long until = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Today((int) date.toEpochDay(), date, from, until);
+    }
+}
@@ -0,0 +1,80 @@
+package coursework;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of CsvImporter.importFile.
+ * - imported  : number of products added to the store
+ * - problems  : rejected lines (duplicate ID, bad format), in file order;
+ *               only the first MAX_REPORTED are kept, all are counted
+ * - saved     : true if the store was persisted at the end
+ */
+public final class ImportResult {
+
+    /** Problems kept in the report (the counts cover all of them). */
+    public static final int MAX_REPORTED = 1000;
+
+    /** Why a line was rejected. */
+    public enum Reason {
+        DUPLICATE_ID,   // ID already in the store or earlier in the file
+        INVALID_LINE    // wrong number of fields, empty ID/name, bad quantity
+    }
+
+    /** One rejected line. */
+    public static final class Problem {
+        private final long lineNumber;
+        private final Reason reason;
+        private final String detail;
+
+        Problem(long lineNumber, Reason reason, String detail) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+            this.detail = detail;
+        }
+
+        /** @return 1-based line number in the file */
+        public long getLineNumber() { return lineNumber; }
+
+        public Reason getReason() { return reason; }
+
+        /** @return product ID (duplicates) or what was wrong (invalid lines) */
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + reason + " (" + detail + ")";
+        }
+    }
+
+    private final long imported;
+    private final long duplicates;
+    private final long invalid;
+    private final List<Problem> problems;
+    private final boolean saved;
+
+    ImportResult(long imported, long duplicates, long invalid, List<Problem> problems, boolean saved) {
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.invalid = invalid;
+        this.problems = Collections.unmodifiableList(problems);
+        this.saved = saved;
+    }
+
+    public long getImported() { return imported; }
+
+    public long getDuplicateCount() { return duplicates; }
+
+    public long getInvalidCount() { return invalid; }
+
+    /** @return first MAX_REPORTED rejected lines, in file order */
+    public List<Problem> getProblems() { return problems; }
+
+    public boolean isSaved() { return saved; }
+
+    @Override
+    public String toString() {
+        return "Imported " + imported + ", duplicates " + duplicates + ", invalid " + invalid
+                + (saved ? ", saved" : ", not saved");
+    }
+}
@@ -0,0 +1,411 @@
+package coursework;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless HTTP API over a ProductManager, for tills and the web shop.
+ * <p>
+ * Endpoints (parameters as query string or form body, responses in JSON):
+ * <pre>
+ * GET    /products?q=milk&offset=0&limit=50     search by ID or name
+ * POST   /products?id=P1&name=Milk&quantity=10  add product      (201, 409 if the ID exists)
+ * GET    /products/{id}                         one product      (404 if unknown)
+ * DELETE /products/{id}                         delete product   (204, 404)
+ * POST   /products/{id}/stock?add=5             add to stock     (200, 404)
+ * POST   /products/{id}/stock?remove=3          remove from stock (200, 404, 409 not enough stock)
+ * GET    /products/{id}/activities              last activities, sorted by quantity
+ * GET    /replication                           replication status and lag
+ * </pre>
+ * Requests are handled on virtual threads when the JVM has them (Java 21+),
+ * so thousands of open till connections cost no platform threads; on older
+ * JVMs a fixed pool of platform threads is used instead.
+ * <p>
+ * With a data file, the catalog is loaded at start-up, journal mode is on,
+ * and every mutation is acknowledged only after it reached disk. Concurrent
+ * requests share one journal sync (see AsyncPersister).
+ * <p>
+ * Replication: a server can ship its journal to read replicas
+ * (setReplicationPrimary), or serve a replica's store (setReplica), in which
+ * case it only answers reads (mutations get 403).
+ */
+public class InventoryServer {
+
+    private final ProductManager manager;
+    private final String dataFile; // null = in memory only
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile ReplicationPrimary primary; // null = not shipping
+    private volatile Replica replica;            // null = not a replica
+
+    /**
+     * @param manager  store to serve
+     * @param port     TCP port (0 = any free port)
+     * @param dataFile snapshot file to persist to, or null for no persistence
+     */
+    public InventoryServer(ProductManager manager, int port, String dataFile) throws IOException {
+        this.manager = manager;
+        this.dataFile = dataFile;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/products", this::handle);
+        server.createContext("/replication", this::replication);
+    }
+
+    /** Reports this primary's replicas under /replication. */
+    public void setReplicationPrimary(ReplicationPrimary primary) {
+        this.primary = primary;
+    }
+
+    /** Serves a replica's store: read-only, lag reported under /replication. */
+    public void setReplica(Replica replica) {
+        this.replica = replica;
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        server.start();
+    }
+
+    /** @return the port the server listens on */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to delaySeconds for running ones, then
+     * flushes the data file.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dataFile != null) {
+            manager.saveToFile(dataFile);
+            try {
+                manager.closeJournal();
+            } catch (IOException e) {
+                System.err.println("Journal close failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // one virtual thread per request if available (Java 21+), else a fixed pool
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(64, Runtime.getRuntime().availableProcessors() * 16);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "http-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---------------- routing ----------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String[] parts = ex.getRequestURI().getPath().split("/"); // "", "products", id, sub
+            Map<String, String> params = params(ex);
+            String method = ex.getRequestMethod();
+            if (replica != null && !method.equals("GET")) {
+                send(ex, 403, error("Read-only replica, send changes to the primary"));
+            } else if (parts.length == 2) {
+                if (method.equals("GET")) search(ex, params);
+                else if (method.equals("POST")) addProduct(ex, params);
+                else send(ex, 405, error("Method not allowed"));
+            } else if (parts.length == 3) {
+                if (method.equals("GET")) getProduct(ex, parts[2]);
+                else if (method.equals("DELETE")) deleteProduct(ex, parts[2]);
+                else send(ex, 405, error("Method not allowed"));
+            } else if (parts.length == 4 && parts[3].equals("stock")) {
+                if (method.equals("POST")) changeStock(ex, parts[2], params);
+                else send(ex, 405, error("Method not allowed"));
+            } else if (parts.length == 4 && parts[3].equals("activities")) {
+                if (method.equals("GET")) activities(ex, parts[2]);
+                else send(ex, 405, error("Method not allowed"));
+            } else {
+                send(ex, 404, error("Not found"));
+            }
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            send(ex, 400, error(e.getMessage()));
+        } catch (CompletionException e) {
+            send(ex, 500, error("Not saved: " + e.getCause().getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    // ---------------- operations ----------------
+
+    private void replication(HttpExchange ex) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder("{\"lastSeq\":").append(manager.getLastSeq());
+            Replica r = replica;
+            if (r != null) {
+                sb.append(",\"role\":\"replica\",\"connected\":").append(r.isConnected())
+                  .append(",\"primarySeq\":").append(r.getPrimarySeq())
+                  .append(",\"lagRecords\":").append(r.getLagRecords())
+                  .append(",\"lagMillis\":").append(r.getLagMillis());
+            } else {
+                sb.append(",\"role\":\"primary\",\"replicas\":{");
+                ReplicationPrimary p = primary;
+                if (p != null) {
+                    boolean first = true;
+                    for (Map.Entry<String, Long> e : p.getReplicaLag().entrySet()) {
+                        if (!first) sb.append(',');
+                        first = false;
+                        appendString(sb, e.getKey());
+                        sb.append(':').append(e.getValue());
+                    }
+                }
+                sb.append('}');
+            }
+            send(ex, 200, sb.append('}').toString());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void search(HttpExchange ex, Map<String, String> params) throws IOException {
+        int offset = intParam(params, "offset", 0);
+        int limit = intParam(params, "limit", 50);
+        List<Product> page = manager.searchByIdOrName(params.getOrDefault("q", ""), offset, limit);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendProduct(sb, page.get(i));
+        }
+        send(ex, 200, sb.append(']').toString());
+    }
+
+    private void addProduct(HttpExchange ex, Map<String, String> params) throws IOException {
+        String id = required(params, "id");
+        String name = required(params, "name");
+        int qty = intParam(params, "quantity", 0);
+        if (qty < 0) throw new IllegalArgumentException("quantity must not be negative");
+        Product p = new Product(id, name, qty);
+        if (!manager.addProduct(p)) {
+            send(ex, 409, error("Product ID already exists: " + id));
+            return;
+        }
+        persist();
+        send(ex, 201, product(p));
+    }
+
+    private void getProduct(HttpExchange ex, String id) throws IOException {
+        Product p = manager.getProduct(id);
+        if (p == null) send(ex, 404, error("Unknown product: " + id));
+        else send(ex, 200, product(p));
+    }
+
+    private void deleteProduct(HttpExchange ex, String id) throws IOException {
+        if (!manager.deleteProduct(id)) {
+            send(ex, 404, error("Unknown product: " + id));
+            return;
+        }
+        persist();
+        send(ex, 204, null);
+    }
+
+    private void changeStock(HttpExchange ex, String id, Map<String, String> params) throws IOException {
+        boolean add = params.containsKey("add");
+        if (add == params.containsKey("remove")) {
+            throw new IllegalArgumentException("give exactly one of add / remove");
+        }
+        int q = intParam(params, add ? "add" : "remove", 0);
+        if (q < 0) throw new IllegalArgumentException("quantity must not be negative");
+        if (manager.getProduct(id) == null) {
+            send(ex, 404, error("Unknown product: " + id));
+            return;
+        }
+        boolean ok = add ? manager.addToStock(id, q) : manager.removeFromStock(id, q);
+        if (!ok) {
+            send(ex, manager.getProduct(id) == null ? 404 : 409,
+                 error(add ? "Unknown product: " + id : "Not enough stock for " + id));
+            return;
+        }
+        persist();
+        send(ex, 200, product(manager.getProduct(id)));
+    }
+
+    private void activities(HttpExchange ex, String id) throws IOException {
+        Activity[] acts = manager.getSortedActivities(id);
+        if (acts == null) {
+            send(ex, 404, error("Unknown product: " + id));
+            return;
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < acts.length; i++) {
+            Activity a = acts[i];
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":\"").append(a.getActivityID())
+              .append("\",\"type\":\"").append(a.getActivityName())
+              .append("\",\"quantity\":").append(a.getActivityQuantity())
+              .append(",\"date\":\"").append(a.getActivityDate()).append("\"}");
+        }
+        send(ex, 200, sb.append(']').toString());
+    }
+
+    // wait until the mutation is durable (no-op without a data file)
+    private void persist() {
+        if (dataFile != null) manager.saveToFileAsync(dataFile).join();
+    }
+
+    // ---------------- helpers ----------------
+
+    private static String product(Product p) {
+        StringBuilder sb = new StringBuilder();
+        appendProduct(sb, p);
+        return sb.toString();
+    }
+
+    private static void appendProduct(StringBuilder sb, Product p) {
+        sb.append("{\"id\":");
+        appendString(sb, p.getProductID());
+        sb.append(",\"name\":");
+        appendString(sb, p.getProductName());
+        sb.append(",\"quantity\":").append(p.getProductQuantity())
+          .append(",\"lastUpdated\":\"").append(p.getEntryDate()).append("\"}");
+    }
+
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendString(sb, message == null ? "Bad request" : message);
+        return sb.append('}').toString();
+    }
+
+    // JSON string literal with the required escapes
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        if (json == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // query string + form body (body wins on duplicates)
+    private static Map<String, String> params(HttpExchange ex) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(ex.getRequestURI().getRawQuery(), params);
+        try (InputStream in = ex.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            in.transferTo(body);
+            if (body.size() > 0) parseForm(body.toString(StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> out) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            out.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> params, String key) {
+        String v = params.get(key);
+        if (v == null || v.trim().isEmpty()) throw new IllegalArgumentException("missing parameter: " + key);
+        return v.trim();
+    }
+
+    private static int intParam(Map<String, String> params, String key, int def) {
+        String v = params.get(key);
+        if (v == null || v.isEmpty()) return def;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a whole number");
+        }
+    }
+
+    /**
+     * Usage: java [-Dmetrics.dump=metrics.txt] [-Dreplication.port=9090 | -Dreplica.of=host:9090]
+     *             coursework.InventoryServer [port] [dataFile]
+     * Defaults: port 8080, data.dat (same file as the dashboard).
+     * Metrics are published over JMX as coursework:type=ProductManager,name="server";
+     * with -Dmetrics.dump they are also written to that file every minute.
+     * <p>
+     * -Dreplication.port : ship the journal to replicas connecting on that port.
+     * -Dreplica.of       : run as a read replica of that primary. The data file
+     *                      (if it exists) is the starting point, the replica
+     *                      catches up from its sequence number and saves it
+     *                      again on shutdown; nothing is journaled, saves are
+     *                      delta checkpoints (see ProductManager.enableCheckpoints).
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String dataFile = args.length > 1 ? args[1] : "data.dat";
+        String primaryAddress = System.getProperty("replica.of");
+        ProductManager manager = new ProductManager();
+        manager.loadFromFile(dataFile);
+        if (primaryAddress == null) manager.enableJournal(dataFile);
+        else manager.enableCheckpoints(dataFile);
+        manager.getMetrics().register("server");
+        String dump = System.getProperty("metrics.dump");
+        if (dump != null) manager.getMetrics().startDump(new File(dump), 60);
+        InventoryServer server = new InventoryServer(manager, port, dataFile);
+        if (primaryAddress != null) {
+            int colon = primaryAddress.lastIndexOf(':');
+            Replica replica = new Replica(manager, primaryAddress.substring(0, colon),
+                                          Integer.parseInt(primaryAddress.substring(colon + 1)));
+            server.setReplica(replica);
+            replica.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(replica::close, "replica-shutdown"));
+        }
+        String replicationPort = System.getProperty("replication.port");
+        if (replicationPort != null && primaryAddress == null) {
+            ReplicationPrimary primary = new ReplicationPrimary(manager, Integer.parseInt(replicationPort));
+            server.setReplicationPrimary(primary);
+            primary.start();
+            System.out.println("Shipping journal to replicas on port " + primary.getPort());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(2), "server-shutdown"));
+        server.start();
+        System.out.println("Inventory " + (primaryAddress == null ? "server" : "replica of " + primaryAddress)
+                + " on port " + server.getPort() + ", data file " + dataFile);
+    }
+}
@@ -0,0 +1,315 @@
+package coursework;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Append-only write-ahead journal of product mutations.
+ * <p>
+ * A journal file starts with int magic "SMKJ" and short version, then the
+ * records. Each record is small and fixed in shape:
+ * - seq      : long, strictly increasing sequence number
+ * - op       : byte, one of the OP_* constants
+ * - id       : product ID (modified UTF-8)
+ * - name     : product name, only written for OP_ADD_PRODUCT
+ * - capacity : byte, activity capacity, only written for OP_ADD_PRODUCT
+ * - quantity : int, initial quantity or amount added/removed
+ * - date     : long, epoch day the change happened
+ * <p>
+ * So the cost of logging one stock movement depends on the size of the change,
+ * not on the size of the catalog. A torn record at the end of the file (crash
+ * while appending) is ignored on replay, and cut off when the file is opened
+ * for appending again, so new records never follow a partial one. Bytes that
+ * do not decode as a record (bad op, date or capacity) fail the replay with
+ * an IOException.
+ * <p>
+ * An OP_BATCH record (quantity = number of records that follow) groups a
+ * batch: replay delivers either all of its records or none of them.
+ * <p>
+ * An OP_RESERVE_IDS record is just seq, op and a long: the new Activity ID
+ * reservation mark (see Activity), written once per block of IDs.
+ * <p>
+ * An OP_SET_CAPACITY record carries the product's new activity capacity in
+ * the quantity field.
+ */
+public class Journal implements Closeable {
+
+    public static final byte OP_ADD_PRODUCT = 1;
+    public static final byte OP_DELETE_PRODUCT = 2;
+    public static final byte OP_ADD_STOCK = 3;
+    public static final byte OP_REMOVE_STOCK = 4;
+    public static final byte OP_BATCH = 5;
+    public static final byte OP_RESERVE_IDS = 6;
+    public static final byte OP_SET_CAPACITY = 7;
+
+    public static final int MAGIC = 0x534D4B4A; // "SMKJ"
+    public static final short VERSION = 1;
+    static final int HEADER_SIZE = 6;
+
+    /** One decoded journal entry. */
+    public static class Record {
+        public final long seq;
+        public final byte op;
+        public final String productID;
+        public final String productName; // null unless op == OP_ADD_PRODUCT
+        public final int activityCapacity; // only for OP_ADD_PRODUCT
+        public final int quantity;
+        public final LocalDate date;
+        public final long activityMark;  // only for OP_RESERVE_IDS
+
+        Record(long seq, byte op, String productID, String productName, int quantity, LocalDate date) {
+            this(seq, op, productID, productName, 0, quantity, date, 0);
+        }
+
+        private Record(long seq, byte op, String productID, String productName, int activityCapacity,
+                       int quantity, LocalDate date, long activityMark) {
+            this.seq = seq;
+            this.op = op;
+            this.productID = productID;
+            this.productName = productName;
+            this.activityCapacity = activityCapacity;
+            this.quantity = quantity;
+            this.date = date;
+            this.activityMark = activityMark;
+        }
+    }
+
+    private final File file;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+
+    /** Bytes currently in the journal file (existing content + appended). */
+    private long length;
+
+    /** Value of length at the last sync. */
+    private long syncedLength;
+
+    /**
+     * Opens (or creates) a journal file for appending.
+     * A new file (or one too short to hold a record, e.g. a torn header)
+     * starts over with the header; a torn record or batch at the end of an
+     * existing file is truncated away.
+     *
+     * @param file journal file, e.g. data.dat.journal
+     * @throws IOException also if the file is not a journal or is corrupt
+     *         before its end (nothing is truncated then)
+     */
+    public Journal(File file) throws IOException {
+        this.file = file;
+        boolean fresh = file.length() < HEADER_SIZE;
+        if (!fresh) {
+            checkHeader(file);
+            long complete = completeLength(file);
+            if (complete < file.length()) {
+                try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    ch.truncate(complete);
+                    ch.force(true);
+                }
+            }
+        }
+        this.fileOut = new FileOutputStream(file, !fresh);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        this.length = fresh ? 0 : file.length();
+        this.syncedLength = length;
+        if (fresh) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            length = HEADER_SIZE;
+        }
+    }
+
+    /** @return the file this journal appends to */
+    public File getFile() { return file; }
+
+    /** @return size of the journal in bytes, including buffered records */
+    public long length() { return length; }
+
+    /**
+     * Appends one record to the buffer. Call sync() to make it durable.
+     *
+     * @param activityCapacity only used for OP_ADD_PRODUCT
+     */
+    public void append(long seq, byte op, String productID, String productName, int activityCapacity,
+                       int quantity, LocalDate date) throws IOException {
+        int before = out.size();
+        write(out, seq, op, productID, productName, activityCapacity, quantity, date);
+        length += out.size() - before;
+    }
+
+    /**
+     * Appends an OP_RESERVE_IDS record.
+     *
+     * @param mark new Activity ID reservation mark
+     */
+    public void appendReservation(long seq, long mark) throws IOException {
+        int before = out.size();
+        writeReservation(out, seq, mark);
+        length += out.size() - before;
+    }
+
+    /** Writes one record in journal format to any stream (journal file, replication). */
+    static void write(DataOutputStream out, long seq, byte op, String productID, String productName,
+                      int activityCapacity, int quantity, LocalDate date) throws IOException {
+        out.writeLong(seq);
+        out.writeByte(op);
+        out.writeUTF(productID);
+        if (op == OP_ADD_PRODUCT) {
+            out.writeUTF(productName);
+            out.writeByte(activityCapacity);
+        }
+        out.writeInt(quantity);
+        out.writeLong(date.toEpochDay());
+    }
+
+    /** Writes an OP_RESERVE_IDS record in journal format to any stream. */
+    static void writeReservation(DataOutputStream out, long seq, long mark) throws IOException {
+        out.writeLong(seq);
+        out.writeByte(OP_RESERVE_IDS);
+        out.writeLong(mark);
+    }
+
+    /**
+     * Flushes buffered records and forces them to disk.
+     *
+     * @return number of bytes made durable by this call
+     */
+    public long sync() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+        long synced = length - syncedLength;
+        syncedLength = length;
+        return synced;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Reads every complete record of a journal file in order.
+     * A missing file has no records; a torn last record is skipped, and so is
+     * an incomplete batch. OP_BATCH headers themselves are not passed on.
+     *
+     * @param file    journal file to read
+     * @param handler called once per record
+     */
+    public static void replay(File file, Consumer<Record> handler) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) return;
+        checkHeader(file);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            in.skipNBytes(HEADER_SIZE);
+            replay(in, handler);
+        }
+    }
+
+    /**
+     * Same as replay(File) for records in journal format from any stream
+     * (e.g. a frame shipped to a replica: records only, no file header).
+     * Reads to the end of the stream.
+     */
+    public static void replay(InputStream stream, Consumer<Record> handler) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        while (next(in, handler)) { }
+    }
+
+    // reads one record, or one complete batch, and passes it on
+    // @return false at the end of the stream or at a record/batch cut short by a crash
+    private static boolean next(DataInputStream in, Consumer<Record> handler) throws IOException {
+        Record r;
+        Record[] batch = null;
+        try {
+            r = readRecord(in);
+            if (r.op == OP_BATCH) {
+                if (r.quantity < 0) throw new IOException("Corrupt journal batch of " + r.quantity + " at seq " + r.seq);
+                batch = new Record[r.quantity];
+                for (int i = 0; i < batch.length; i++) batch[i] = readRecord(in);
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+        if (batch == null) {
+            handler.accept(r);
+        } else {
+            for (Record b : batch) handler.accept(b);
+        }
+        return true;
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        byte op = in.readByte();
+        if (op == OP_RESERVE_IDS) return new Record(seq, op, null, null, 0, 0, null, in.readLong());
+        if (op < OP_ADD_PRODUCT || op > OP_SET_CAPACITY) {
+            throw new IOException("Corrupt journal record: op " + op + " at seq " + seq);
+        }
+        String id = in.readUTF();
+        String name = null;
+        int capacity = 0;
+        if (op == OP_ADD_PRODUCT) {
+            name = in.readUTF();
+            capacity = in.readUnsignedByte();
+            if (capacity == 0) throw new IOException("Corrupt journal record: capacity 0 at seq " + seq);
+        }
+        int qty = in.readInt();
+        long day = in.readLong();
+        try {
+            return new Record(seq, op, id, name, capacity, qty, LocalDate.ofEpochDay(day), 0);
+        } catch (DateTimeException e) {
+            throw new IOException("Corrupt journal record: day " + day + " at seq " + seq);
+        }
+    }
+
+    // bytes from the start of the file to the end of its last complete record or batch
+    private static long completeLength(File file) throws IOException {
+        try (CountingInputStream counted = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            DataInputStream in = new DataInputStream(counted);
+            in.skipNBytes(HEADER_SIZE);
+            long complete = counted.count;
+            while (next(in, r -> { })) complete = counted.count;
+            return complete;
+        }
+    }
+
+    // counts the bytes read through it
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) { super(in); }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // rejects files that are not journals of the current version
+    private static void checkHeader(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a journal file: " + file);
+            int version = in.readShort();
+            if (version != VERSION) throw new IOException("Unsupported journal version " + version + ": " + file);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package coursework;
+
+/**
+ * Callback for every mutation a ProductManager logs, as journal bytes
+ * (journal shipping to replicas, see ReplicationPrimary).
+ * <p>
+ * Called once per mutation or batch, in sequence order, while the manager's
+ * journal lock is held, whether or not journal mode is on. Implementations
+ * must be quick (no I/O) and must not call back into the manager.
+ */
+public interface JournalListener {
+
+    /**
+     * @param firstSeq sequence number of the first record in the frame
+     * @param lastSeq  sequence number of the last record in the frame
+     * @param frame    the records in journal format (see Journal), a batch is
+     *                 always in one frame; do not modify
+     */
+    void recordsLogged(long firstSeq, long lastSeq, byte[] frame);
+}
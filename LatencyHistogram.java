@@ -0,0 +1,71 @@
+package coursework;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with power-of-two buckets (bucket i counts values in
+ * [2^(i-1), 2^i) nanoseconds), so recording is one leading-zero count and one
+ * LongAdder increment: no allocation, no lock, cheap under contention.
+ * <p>
+ * Percentiles are reported as the upper bound of the bucket they fall in,
+ * i.e. at most 2x the real value, which is enough to spot slow paths.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    /** Records one duration (negative values count as 0). */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        buckets[BUCKETS - Long.numberOfLeadingZeros(v)].increment();
+        total.add(v);
+        max.accumulate(v);
+    }
+
+    /** @return number of recorded values */
+    public long count() {
+        long n = 0;
+        for (LongAdder b : buckets) n += b.sum();
+        return n;
+    }
+
+    /** @return sum of all recorded values (ns) */
+    public long totalNanos() { return total.sum(); }
+
+    /** @return largest recorded value (ns) */
+    public long maxNanos() { return max.get(); }
+
+    /**
+     * @param percentile 0..100
+     * @return upper bound (ns) of the bucket holding that percentile, 0 if empty
+     */
+    public long percentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts[i] = buckets[i].sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return i == 0 ? 0 : Math.min(maxNanos(), (1L << i) - 1);
+        }
+        return maxNanos();
+    }
+
+    /** Clears all values. */
+    public void reset() {
+        for (LongAdder b : buckets) b.reset();
+        total.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,126 @@
+package coursework;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load test for InventoryServer: many simulated tills posting stock
+ * movements (plus some lookups) as fast as they can.
+ * <p>
+ * Each till is one thread of its own doing blocking requests one after
+ * another, so "tills" is the number of concurrent connections. Every request's
+ * latency is recorded; at the end throughput and p50 / p99 / max latency are
+ * printed. A failed request (I/O error or status >= 300) counts as an error
+ * and the till goes on.
+ * <p>
+ * Usage: java coursework.LoadTestClient [baseUrl] [tills] [seconds] [products]
+ * Defaults: http://localhost:8080 200 10 1000
+ */
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int tills = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int products = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        // catalog to work on (409 = already there from an earlier run)
+        for (int i = 0; i < products; i++) {
+            post(client, base + "/products?id=LT" + i + "&name=Load+test+" + i + "&quantity=1000000");
+        }
+
+        long[][] latencies = new long[tills][];
+        int[] counts = new int[tills];
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(tills);
+        // exactly one thread per till: a smaller pool would start the rest after the end
+        ExecutorService pool = Executors.newFixedThreadPool(tills, r -> {
+            Thread t = new Thread(r, "till");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int t = 0; t < tills; t++) {
+            final int till = t;
+            pool.execute(() -> {
+                Random rnd = new Random(till);
+                long[] lat = new long[1024];
+                int n = 0;
+                try {
+                    while (System.nanoTime() < end) {
+                        String id = "LT" + rnd.nextInt(products);
+                        int op = rnd.nextInt(10);
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            if (op < 4) status = post(client, base + "/products/" + id + "/stock?add=1");
+                            else if (op < 8) status = post(client, base + "/products/" + id + "/stock?remove=1");
+                            else status = get(client, base + "/products/" + id);
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        long took = System.nanoTime() - start;
+                        if (status >= 300) errors.incrementAndGet();
+                        if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                        lat[n++] = took;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[till] = lat;
+                    counts[till] = n;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+
+        int total = 0;
+        for (int c : counts) total += c;
+        long[] all = new long[total];
+        int k = 0;
+        for (int t = 0; t < tills; t++) {
+            System.arraycopy(latencies[t], 0, all, k, counts[t]);
+            k += counts[t];
+        }
+        Arrays.sort(all);
+        System.out.printf("tills=%d duration=%ds requests=%d errors=%d%n", tills, seconds, total, errors.get());
+        System.out.printf("throughput: %.0f req/s%n", total / (double) seconds);
+        if (total > 0) {
+            System.out.printf("latency ms: p50=%.2f p99=%.2f max=%.2f%n",
+                    percentile(all, 50) / 1e6, percentile(all, 99) / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    private static int post(HttpClient client, String url) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static int get(HttpClient client, String url) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
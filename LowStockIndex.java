@@ -0,0 +1,126 @@
+package coursework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks which products are "low" (quantity below their threshold).
+ * - Threshold: a global default (5, like the old hard-coded check) that can be
+ *   overridden per product. Overrides live in memory only.
+ * - Low products are kept in a sorted map by ID, updated in O(log n) from every
+ *   stock change, so reading the low-stock list never scans the catalog.
+ * - LowStockListeners hear about threshold crossings only.
+ */
+public class LowStockIndex implements StockListener {
+
+    /** Default threshold: quantity below this is low. */
+    public static final int DEFAULT_THRESHOLD = 5;
+
+    private volatile int threshold = DEFAULT_THRESHOLD;
+    private final ConcurrentHashMap<String, Integer> overrides = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Product> low = new ConcurrentSkipListMap<>();
+    private final CopyOnWriteArrayList<LowStockListener> listeners = new CopyOnWriteArrayList<>();
+
+    // ---------------- thresholds ----------------
+
+    /** @return the threshold that applies to this product */
+    public int thresholdFor(Product p) {
+        Integer t = overrides.get(p.getProductID());
+        return t != null ? t : threshold;
+    }
+
+    /** @return the global threshold */
+    public int getThreshold() { return threshold; }
+
+    /**
+     * Changes the global threshold and re-checks the products that use it.
+     *
+     * @param all every product in the store
+     */
+    public void setThreshold(int newThreshold, Collection<Product> all) {
+        threshold = newThreshold;
+        for (Product p : all) {
+            if (!overrides.containsKey(p.getProductID())) recheck(p);
+        }
+    }
+
+    /** Sets a per-product threshold and re-checks that product. */
+    public void setThreshold(Product p, int newThreshold) {
+        overrides.put(p.getProductID(), newThreshold);
+        recheck(p);
+    }
+
+    /** Removes a per-product threshold (back to the global one). */
+    public void clearThreshold(Product p) {
+        overrides.remove(p.getProductID());
+        recheck(p);
+    }
+
+    // ---------------- updates ----------------
+
+    /** Adds a product to the index (reported if it starts out low). */
+    public void add(Product p) {
+        recheck(p);
+    }
+
+    /** Removes a product (reported as no longer low if it was). */
+    public void remove(Product p) {
+        overrides.remove(p.getProductID());
+        if (low.remove(p.getProductID(), p)) fire(p, false);
+    }
+
+    /** Drops everything (before a reload); no events. */
+    public void clear() {
+        low.clear();
+        overrides.clear();
+    }
+
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        int t = thresholdFor(product);
+        boolean wasLow = oldQuantity < t;
+        boolean isLow = product.getProductQuantity() < t;
+        if (wasLow == isLow) return; // no crossing: nothing to do
+        if (isLow) low.put(product.getProductID(), product);
+        else low.remove(product.getProductID(), product);
+        fire(product, isLow);
+    }
+
+    private void recheck(Product p) {
+        boolean isLow = p.getProductQuantity() < thresholdFor(p);
+        boolean changed = isLow
+                ? low.put(p.getProductID(), p) == null
+                : low.remove(p.getProductID(), p);
+        if (changed) fire(p, isLow);
+    }
+
+    // ---------------- queries ----------------
+
+    /** @return true if the product is currently below its threshold */
+    public boolean isLow(Product p) {
+        return low.get(p.getProductID()) == p;
+    }
+
+    /** @return all low products, ordered by ID */
+    public ArrayList<Product> lowProducts() {
+        return new ArrayList<>(low.values());
+    }
+
+    /** @return number of low products */
+    public int lowCount() {
+        return low.size();
+    }
+
+    // ---------------- listeners ----------------
+
+    public void addListener(LowStockListener l) { listeners.add(l); }
+
+    public void removeListener(LowStockListener l) { listeners.remove(l); }
+
+    private void fire(Product p, boolean isLow) {
+        for (LowStockListener l : listeners) l.lowStockChanged(p, isLow);
+    }
+}
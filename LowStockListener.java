@@ -0,0 +1,15 @@
+package coursework;
+
+/**
+ * Notified when a product crosses its low-stock threshold.
+ * Only crossings are reported, not every stock change.
+ */
+public interface LowStockListener {
+
+    /**
+     * @param product the product (stock already updated)
+     * @param low     true if it just went below its threshold,
+     *                false if it just got back to (or above) it or left the store
+     */
+    void lowStockChanged(Product product, boolean low);
+}
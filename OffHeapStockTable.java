@@ -0,0 +1,190 @@
+package coursework;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Optional off-heap storage for the hot, changing fields of products.
+ * <p>
+ * Every product gets a dense slot (fixed-size record) in direct ByteBuffers,
+ * allocated in chunks so the table can grow to millions of products:
+ * <pre>
+ * slot (112 bytes):
+ *   0  int quantity
+ *   4  int lastUpdated (epoch day)
+ *   8  int activityCount (added so far, kept below 2 * RING once the ring is
+ *      full; ring head = count &amp; (RING - 1))
+ *   12 int used (1 while a product owns the slot)
+ *   16 RING activity entries of 24 bytes:
+ *      long id, int quantity, int epoch day, byte type, 7 bytes padding
+ * </pre>
+ * A Product attached to the table (Product.moveTo) keeps only its ID and
+ * name on the heap and reads/writes everything else here, so the GC does not
+ * see a Queue + Object[] + Activity objects per product, and whole-catalog scans
+ * (totalQuantity, countAtOrBelow) walk contiguous memory.
+ * <p>
+ * Thread safety: a slot is only read or written under its product's monitor
+ * (Product frees it under that monitor too, so it cannot be freed or reused
+ * under a reader). quantity and lastUpdated use volatile accesses so the bulk
+ * scans, which take no product locks, see fresh values. Slot allocation is
+ * synchronized.
+ */
+public class OffHeapStockTable {
+
+    /** Activities kept per product (same as the on-heap Queue). Power of two. */
+    static final int RING = 4;
+
+    private static final int QTY = 0;
+    private static final int UPDATED = 4;
+    private static final int COUNT = 8;
+    private static final int USED = 12;
+    private static final int RING_START = 16;
+    private static final int ENTRY = 24;
+    static final int SLOT_SIZE = RING_START + RING * ENTRY;
+
+    private static final int CHUNK_SHIFT = 14; // 16384 slots (~1.8 MB) per buffer
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    // ---- slot allocation (guarded by this) ----
+    private int slotCount;                 // highest used slot + 1
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int live;
+
+    // ---------------- slots ----------------
+
+    /** @return a zeroed slot for a new product */
+    synchronized int allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            if ((slot >> CHUNK_SHIFT) >= chunks.length) {
+                ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = ByteBuffer.allocateDirect(CHUNK_SLOTS * SLOT_SIZE)
+                                                 .order(ByteOrder.nativeOrder());
+                chunks = grown;
+            }
+        }
+        INT.setVolatile(chunk(slot), base(slot) + USED, 1);
+        live++;
+        return slot;
+    }
+
+    /** Zeroes a slot and makes it available again. */
+    synchronized void free(int slot) {
+        ByteBuffer b = chunk(slot);
+        int base = base(slot);
+        for (int i = RING_START; i < SLOT_SIZE; i += 4) b.putInt(base + i, 0);
+        INT.setVolatile(b, base + QTY, 0);
+        INT.setVolatile(b, base + UPDATED, 0);
+        INT.setVolatile(b, base + COUNT, 0);
+        INT.setVolatile(b, base + USED, 0);
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        live--;
+    }
+
+    /** @return number of products stored */
+    public synchronized int size() { return live; }
+
+    /** @return off-heap bytes reserved by the table */
+    public long reservedBytes() { return (long) chunks.length * CHUNK_SLOTS * SLOT_SIZE; }
+
+    private ByteBuffer chunk(int slot) { return chunks[slot >> CHUNK_SHIFT]; }
+
+    private static int base(int slot) { return (slot & CHUNK_MASK) * SLOT_SIZE; }
+
+    // ---------------- fields ----------------
+
+    int quantity(int slot) {
+        return (int) INT.getVolatile(chunk(slot), base(slot) + QTY);
+    }
+
+    void setQuantity(int slot, int quantity) {
+        INT.setVolatile(chunk(slot), base(slot) + QTY, quantity);
+    }
+
+    int lastUpdated(int slot) {
+        return (int) INT.getVolatile(chunk(slot), base(slot) + UPDATED);
+    }
+
+    void setLastUpdated(int slot, int epochDay) {
+        INT.setVolatile(chunk(slot), base(slot) + UPDATED, epochDay);
+    }
+
+    // ---------------- activity ring (caller holds the product's monitor) ----------------
+
+    /** Appends an activity, overwriting the oldest one when the ring is full. */
+    void addActivity(int slot, Activity a) {
+        ByteBuffer b = chunk(slot);
+        int base = base(slot);
+        int count = b.getInt(base + COUNT);
+        int e = base + RING_START + (count & (RING - 1)) * ENTRY;
+        b.putLong(e, a.getActivityNumber());
+        b.putInt(e + 8, a.getActivityQuantity());
+        b.putInt(e + 12, a.getEpochDay());
+        b.put(e + 16, a.getActivityType().code());
+        // once full only the head position matters: wrap 2 * RING back to RING, never overflow
+        b.putInt(base + COUNT, count + 1 == 2 * RING ? RING : count + 1);
+    }
+
+    /** @return number of activities in the ring (0..RING) */
+    int activityCount(int slot) {
+        return Math.min(RING, chunk(slot).getInt(base(slot) + COUNT));
+    }
+
+    /** @return the activities in the ring, oldest first */
+    Activity[] activities(int slot) {
+        ByteBuffer b = chunk(slot);
+        int base = base(slot);
+        int count = b.getInt(base + COUNT);
+        int n = Math.min(RING, count);
+        Activity[] out = new Activity[n];
+        for (int i = 0; i < n; i++) {
+            int e = base + RING_START + ((count - n + i) & (RING - 1)) * ENTRY;
+            out[i] = new Activity(b.getLong(e), ActivityType.fromCode(b.get(e + 16)),
+                                  b.getInt(e + 8), b.getInt(e + 12));
+        }
+        return out;
+    }
+
+    // ---------------- bulk scans ----------------
+
+    /** @return total units in stock over all stored products (one linear pass) */
+    public long totalQuantity() {
+        int n;
+        synchronized (this) { n = slotCount; }
+        ByteBuffer[] cs = chunks; // read after slotCount: covers every slot below n
+        long sum = 0;
+        for (int s = 0; s < n; s++) {
+            sum += (int) INT.getVolatile(cs[s >> CHUNK_SHIFT], base(s) + QTY); // free slots are 0
+        }
+        return sum;
+    }
+
+    /** @return number of stored products with quantity <= max (one linear pass) */
+    public int countAtOrBelow(int max) {
+        int n;
+        synchronized (this) { n = slotCount; }
+        ByteBuffer[] cs = chunks; // read after slotCount: covers every slot below n
+        int count = 0;
+        for (int s = 0; s < n; s++) {
+            ByteBuffer b = cs[s >> CHUNK_SHIFT];
+            int base = base(s);
+            if ((int) INT.getVolatile(b, base + USED) == 1
+                    && (int) INT.getVolatile(b, base + QTY) <= max) count++;
+        }
+        return count;
+    }
+}
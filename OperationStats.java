@@ -0,0 +1,47 @@
+package coursework;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of one operation's latency histogram (shown as a composite value
+ * in JMX consoles). Times are in microseconds.
+ */
+public class OperationStats {
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    @ConstructorProperties({"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+    public OperationStats(long count, double meanMicros, double p50Micros, double p99Micros, double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    static OperationStats of(LatencyHistogram h) {
+        long n = h.count();
+        return new OperationStats(n, n == 0 ? 0 : h.totalNanos() / 1000.0 / n,
+                h.percentileNanos(50) / 1000.0, h.percentileNanos(99) / 1000.0, h.maxNanos() / 1000.0);
+    }
+
+    public long getCount() { return count; }
+
+    public double getMeanMicros() { return meanMicros; }
+
+    public double getP50Micros() { return p50Micros; }
+
+    public double getP99Micros() { return p99Micros; }
+
+    public double getMaxMicros() { return maxMicros; }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50<=%.1fus p99<=%.1fus max=%.1fus",
+                count, meanMicros, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -1,33 +1,81 @@
 
 package coursework;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.function.Consumer;
 
 
 /**
  * Domain model for a product.
  * - Tracks ID, name, quantity, and lastUpdated date.
- * - Maintains ONLY the last 4 activities via a small circular Queue<Activity>.
+ * - Maintains ONLY the last few activities (4 by default, configurable per
+ *   product) via a small circular Queue<Activity>.
  * - Serializable so the whole app state can be saved/loaded.
+ * - Thread-safe: stock changes lock the product, so the "enough stock?" check and
+ *   the update happen atomically and concurrent tills cannot drive stock negative.
+ * - Optionally the changing fields (quantity, lastUpdated, recent activities) live
+ *   in an OffHeapStockTable slot instead (see moveTo); this class is then a view
+ *   over that slot and the on-heap fields are unused. Only products with the
+ *   default activity capacity are stored off-heap (the slot ring has 4 entries).
  */
 
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /** Recent activities kept per product unless configured otherwise. */
+    public static final int DEFAULT_ACTIVITY_CAPACITY = 4;
+
+    /** Upper limit for the activity capacity (the snapshot stores it in one byte). */
+    public static final int MAX_ACTIVITY_CAPACITY = 255;
+
     private String productID;
     private String productName;
-    private LocalDate lastUpdated;
-    private int productQuantity;
+    private volatile LocalDate lastUpdated;
+    private volatile int productQuantity;
+
+    // last few activities (null while stored off-heap)
+    private Queue<Activity> activities;
 
-    // last 4 activities
-    private Queue<Activity> activities = new Queue<>(4);
+    // notified after each stock change (set by ProductManager, not saved)
+    private transient StockListener listener;
+
+    // off-heap storage; when set, quantity/lastUpdated/activities live in slot
+    private transient volatile OffHeapStockTable table;
+    private transient int slot;
 
     public Product(String productID, String productName, int productQuantity) {
+        this(productID, productName, productQuantity, EpochDays.todayDate());
+    }
+
+    /**
+     * @param activityCapacity number of recent activities to keep (1..MAX_ACTIVITY_CAPACITY)
+     */
+    public Product(String productID, String productName, int productQuantity, int activityCapacity) {
+        this(productID, productName, productQuantity, EpochDays.todayDate(), activityCapacity);
+    }
+
+    // used when rebuilding a product from the journal (keeps the original date)
+    Product(String productID, String productName, int productQuantity, LocalDate lastUpdated) {
+        this(productID, productName, productQuantity, lastUpdated, DEFAULT_ACTIVITY_CAPACITY);
+    }
+
+    Product(String productID, String productName, int productQuantity, LocalDate lastUpdated,
+            int activityCapacity) {
+        checkCapacity(activityCapacity);
         this.productID = productID;
         this.productName = productName;
         this.productQuantity = productQuantity;
-        this.lastUpdated = LocalDate.now();
+        this.lastUpdated = lastUpdated;
+        this.activities = new Queue<>(activityCapacity);
+    }
+
+    static void checkCapacity(int capacity) {
+        if (capacity < 1 || capacity > MAX_ACTIVITY_CAPACITY) {
+            throw new IllegalArgumentException("Activity capacity must be 1.." + MAX_ACTIVITY_CAPACITY);
+        }
     }
 
     public String getProductID() { 
@@ -39,10 +87,18 @@ public class Product implements Serializable {
     }
     
     public LocalDate getEntryDate() { 
-        return lastUpdated; 
+        if (table == null) return lastUpdated;
+        synchronized (this) { // off-heap: the slot cannot be freed or reused while we hold the monitor
+            OffHeapStockTable t = table;
+            return t != null ? LocalDate.ofEpochDay(t.lastUpdated(slot)) : lastUpdated;
+        }
     }
     public int getProductQuantity() { 
-        return productQuantity; 
+        if (table == null) return productQuantity;
+        synchronized (this) { // see getEntryDate
+            OffHeapStockTable t = table;
+            return t != null ? t.quantity(slot) : productQuantity;
+        }
     }
 
     
@@ -52,11 +108,16 @@ public class Product implements Serializable {
      */
 
     public void addQuantity(int q) {
-        
+        addQuantity(q, EpochDays.todayDate());
+    }
+
+    // same as addQuantity(q), but dated (journal replay)
+    synchronized void addQuantity(int q, LocalDate date) {
         if (q < 0) throw new IllegalArgumentException("Quantity cannot be negative");
-        this.productQuantity += q;
-        this.lastUpdated = LocalDate.now();
-        activities.enqueue(new Activity("AddToStock", q));
+        int old = getProductQuantity();
+        Activity a = new Activity(ActivityType.ADD_TO_STOCK, q, date);
+        store(old + q, date, a);
+        if (listener != null) listener.stockChanged(this, old, a);
     }
 
     
@@ -65,33 +126,156 @@ public class Product implements Serializable {
      * Returns false when q < 0 or not enough stock; true on success.
      */
     public boolean removeQuantity(int q) {
+        return removeQuantity(q, EpochDays.todayDate());
+    }
+
+    // same as removeQuantity(q), but dated (journal replay)
+    synchronized boolean removeQuantity(int q, LocalDate date) {
         if (q < 0) return false;
-        if (q > productQuantity) return false;
-        this.productQuantity -= q;
-        this.lastUpdated = LocalDate.now();
-        activities.enqueue(new Activity("RemoveFromStock", q));
+        int old = getProductQuantity();
+        if (q > old) return false;
+        Activity a = new Activity(ActivityType.REMOVE_FROM_STOCK, q, date);
+        store(old - q, date, a);
+        if (listener != null) listener.stockChanged(this, old, a);
         return true;
     }
 
+    // write the new state to the heap fields or the off-heap slot (caller holds the monitor)
+    private void store(int quantity, LocalDate date, Activity a) {
+        OffHeapStockTable t = table;
+        if (t != null) {
+            t.setQuantity(slot, quantity);
+            t.setLastUpdated(slot, (int) date.toEpochDay());
+            t.addActivity(slot, a);
+        } else {
+            this.productQuantity = quantity;
+            this.lastUpdated = date;
+            activities.enqueue(a);
+        }
+    }
+
+    /**
+     * Moves quantity, lastUpdated and the recent activities into a slot of the
+     * table (no-op if already stored there).
+     */
+    synchronized void moveTo(OffHeapStockTable t) {
+        if (table == t) return;
+        if (table == null && activities.getCapacity() != OffHeapStockTable.RING) return; // stays on the heap
+        if (table != null) moveToHeap();
+        int s = t.allocate();
+        t.setQuantity(s, productQuantity);
+        t.setLastUpdated(s, (int) lastUpdated.toEpochDay());
+        for (Activity a : activities.toArray(new Activity[0])) t.addActivity(s, a);
+        activities = null;
+        slot = s;
+        table = t; // publish after the slot is filled
+    }
+
+    /** Copies the off-heap state back into heap fields and frees the slot. */
+    synchronized void moveToHeap() {
+        OffHeapStockTable t = table;
+        if (t == null) return;
+        productQuantity = t.quantity(slot);
+        lastUpdated = LocalDate.ofEpochDay(t.lastUpdated(slot));
+        activities = new Queue<>(OffHeapStockTable.RING);
+        for (Activity a : t.activities(slot)) activities.enqueue(a);
+        table = null;
+        t.free(slot);
+    }
+
+    // set by the store that owns this product (null to detach)
+    synchronized void setStockListener(StockListener listener) {
+        this.listener = listener;
+    }
+
+    /** @return number of recent activities this product keeps */
+    public synchronized int getActivityCapacity() {
+        return table != null ? OffHeapStockTable.RING : activities.getCapacity();
+    }
+
+    /**
+     * Changes how many recent activities this product keeps.
+     * The newest activities are kept when shrinking.
+     * For a product in a store use ProductManager.setActivityCapacity, which
+     * journals the change.
+     *
+     * @param capacity 1..MAX_ACTIVITY_CAPACITY
+     */
+    synchronized void setActivityCapacity(int capacity) {
+        checkCapacity(capacity);
+        if (capacity == getActivityCapacity()) return;
+        moveToHeap(); // the off-heap ring has a fixed size
+        Queue<Activity> resized = new Queue<>(capacity);
+        activities.forEach(resized::enqueue);
+        activities = resized;
+    }
+
     // still available if you want to manually add (rarely used now)
-    public void addActivity(Activity activity) {
-        activities.enqueue(activity);
+    public synchronized void addActivity(Activity activity) {
+        if (table != null) table.addActivity(slot, activity);
+        else activities.enqueue(activity);
     }
 
     
     /**
-     * Return a typed array of the (up to) last 4 activities.
+     * Visits the recent activities, oldest first, without copying them
+     * into a new array.
+     */
+    public synchronized void forEachActivity(Consumer<Activity> action) {
+        if (table != null) {
+            for (Activity a : table.activities(slot)) action.accept(a);
+        } else {
+            activities.forEach(action);
+        }
+    }
+
+    /**
+     * Copies the recent activities, oldest first, into the caller's buffer
+     * (reusable; size it with getActivityCapacity()).
+     *
+     * @return number of activities copied
+     */
+    public synchronized int copyActivities(Activity[] buf) {
+        if (table != null) {
+            Activity[] recent = table.activities(slot);
+            int n = Math.min(recent.length, buf.length);
+            System.arraycopy(recent, 0, buf, 0, n);
+            return n;
+        }
+        return activities.copyTo(buf);
+    }
+
+    /**
+     * Return a typed array of the (up to) last few activities.
      * Using typed array avoids ClassCastException.
      */
-    public Activity[] getActivitiesAsArray() {
+    public synchronized Activity[] getActivitiesAsArray() {
+        if (table != null) return table.activities(slot);
         return activities.toArray(new Activity[0]); // typed array to avoid ClassCastException
     }
 
+    // the serialized form is always the heap layout, also while stored off-heap
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        if (table == null) {
+            out.defaultWriteObject();
+            return;
+        }
+        Queue<Activity> recent = new Queue<>(OffHeapStockTable.RING);
+        for (Activity a : table.activities(slot)) recent.enqueue(a);
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("productID", productID);
+        f.put("productName", productName);
+        f.put("lastUpdated", getEntryDate());
+        f.put("productQuantity", getProductQuantity());
+        f.put("activities", recent);
+        out.writeFields();
+    }
+
     @Override
     public String toString() {
         return "Product ID: " + productID +
                ", Name: " + productName +
-               ", Entry Date: " + lastUpdated +
-               ", Quantity: " + productQuantity;
+               ", Entry Date: " + getEntryDate() +
+               ", Quantity: " + getProductQuantity();
        }
 }
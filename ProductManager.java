@@ -1,97 +1,1515 @@
-
 package coursework;
 
-import java.io.Serializable;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
 
 
 /**
- * Domain model for a product.
- * - Tracks ID, name, quantity, and lastUpdated date.
- * - Maintains ONLY the last 4 activities via a small circular Queue<Activity>.
- * - Serializable so the whole app state can be saved/loaded.
+ * In-memory product store used by the dashboard.
+ * - Products are indexed by ID in a ConcurrentHashMap, so every lookup
+ *   (add/delete/stock changes/activities) is O(1) instead of a list scan.
+ * - A LinkedHashMap keeps insertion order for display.
+ * - A SearchIndex (prefix maps + trigram postings) is updated on add/delete,
+ *   so searchByIdOrName does not scan the catalog.
+ * - SortedViews keep name and quantity orders up to date on every change, so
+ *   sorting, paging and quantity range queries never re-sort the catalog.
+ * - LowStockIndex tracks products below their low-stock threshold, updated on
+ *   every stock change, and reports threshold crossings to LowStockListeners.
+ * - ActivityHistory keeps the full movement history of every product in compact
+ *   columns (saved in the snapshot), for audits and date-range queries.
+ * - DailyRollups keep per-day units in/out of every product, for period totals
+ *   and top/slow movers (rebuilt from the history on load).
+ * - StockoutForecaster keeps a weighted daily consumption rate per product and
+ *   an index by projected stockout day ("runs out within N days" without a scan).
+ * - Every product in the store reports its stock changes to the manager, which
+ *   forwards them to the views and to registered StockListeners.
+ * - Whole catalog can be saved/loaded as a binary snapshot (see SnapshotFormat);
+ *   old Java-serialized data files are migrated on first load.
+ * - Optional off-heap storage (ProductManager(true)): quantities, dates and recent
+ *   activities of all products live in an OffHeapStockTable instead of heap
+ *   objects, which keeps GC work flat for very large catalogs.
+ * - ProductManagerMetrics time every mutation, search, save and load (JMX via
+ *   getMetrics().register(name), optional periodic dump to a file).
+ * - Optional journal mode (enableJournal): every mutation appends a small record
+ *   to "<file>.journal" and saveToFile only syncs that journal. When the journal
+ *   grows past a threshold it is compacted into a new snapshot on a background
+ *   thread. loadFromFile replays snapshot + journal tail.
+ * - Optional checkpoint mode (enableCheckpoints), for stores without a journal:
+ *   saveToFile writes only the products changed since the previous save, as a
+ *   checksummed delta segment "<file>.delta.<seq>" (see DeltaSegment), and
+ *   deltas are merged into the data file on a background thread. loadFromFile
+ *   applies base file + delta chain.
+ * - snapshot() gives an immutable point-in-time view of the catalog for long
+ *   reports; writers keep going and save old values into open views on their
+ *   first change (copy-on-first-write).
+ * - Journal shipping: JournalListeners receive every logged mutation as journal
+ *   bytes (ReplicationPrimary streams them to Replicas, which apply them with
+ *   applyReplicated / loadSnapshot).
+ * <p>
+ * Concurrency (many tills on one manager):
+ * - Mutations of one product are serialized by a striped lock chosen by product ID,
+ *   so tills working on different products run in parallel.
+ * - Product itself guards its check-then-act stock updates, so stock never
+ *   goes negative.
+ * - A read/write lock separates normal mutations (shared) from whole-catalog
+ *   operations like load and compaction (exclusive).
  */
 
-public class Product implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class ProductManager {
+
+    /** Journal size (bytes) that triggers a background compaction. */
+    private static final long DEFAULT_COMPACT_THRESHOLD = 4L * 1024 * 1024;
+
+    /** Total size (bytes) of delta segments that triggers a background merge. */
+    private static final long DEFAULT_MERGE_THRESHOLD = 4L * 1024 * 1024;
+
+    /** Number of delta segments that triggers a background merge. */
+    private static final int MAX_DELTAS = 64;
+
+    // dirty map value of a product that changed but was not added
+    private static final Long CHANGED = -1L;
+
+    // ID -> product, used for all lookups
+    private final ConcurrentHashMap<String, Product> index = new ConcurrentHashMap<>();
+
+    // ID -> product, iteration order = display order (guarded by its own monitor)
+    private final LinkedHashMap<String, Product> products = new LinkedHashMap<>();
+
+    // ID/name search structures, maintained on add/delete
+    private final SearchIndex searchIndex = new SearchIndex();
+
+    // name / quantity orderings, maintained on add/delete/stock change
+    private final SortedViews views = new SortedViews();
+
+    // products below their low-stock threshold
+    private final LowStockIndex lowStock = new LowStockIndex();
+
+    // full movement history (the products only keep their last 4 activities)
+    private final ActivityHistory history = new ActivityHistory();
+
+    // per-product, per-day units in/out
+    private final DailyRollups rollups = new DailyRollups();
+
+    // per-product consumption rate + index by projected stockout day
+    private final StockoutForecaster forecast = new StockoutForecaster();
+
+    // external listeners (GUI, reports, ...)
+    private final CopyOnWriteArrayList<StockListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final CopyOnWriteArrayList<CatalogListener> catalogListeners = new CopyOnWriteArrayList<>();
+
+    // the one listener installed on every product we own
+    private final StockListener dispatcher = this::fireStockChanged;
+
+    // per-product mutation locks, picked by hash of the product ID
+    private final ReentrantLock[] stripes;
 
-    private String productID;
-    private String productName;
-    private LocalDate lastUpdated;
-    private int productQuantity;
+    // shared: mutations, exclusive: load / compaction snapshot
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
 
-    // last 4 activities
-    private Queue<Activity> activities = new Queue<>(4);
+    // ---- journal mode state ----
+    private final Object logLock = new Object(); // keeps journal order == sequence order
+    private volatile Journal journal;            // null when journal mode is off
+    private volatile String journalBase;         // snapshot path the journal belongs to
+    private final AtomicLong lastSeq = new AtomicLong(); // sequence of the last logged mutation
+    private volatile long compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    private boolean compacting;                  // guarded by logLock
+    private long loggedActivityMark;             // guarded by logLock: last OP_RESERVE_IDS written
+    private long replayActivityMark;             // highest OP_RESERVE_IDS seen while loading
+    private ExecutorService compactor;
 
-    public Product(String productID, String productName, int productQuantity) {
-        this.productID = productID;
-        this.productName = productName;
-        this.productQuantity = productQuantity;
-        this.lastUpdated = LocalDate.now();
+    // ---- checkpoint mode state ----
+    private final Object checkpointLock = new Object(); // one checkpoint (or merge rename) at a time
+    private volatile String checkpointBase;             // data file the deltas belong to, null = off
+    private volatile ConcurrentHashMap<String, Long> dirty; // changed since the last checkpoint -> add order or CHANGED
+    private volatile boolean needsBase;                 // next checkpoint writes the whole data file
+    private volatile long checkpointSeq;                // sequence number the files on disk end at
+    private long baseGeneration;                        // guarded by checkpointLock: full checkpoints written
+    private boolean merging;                            // guarded by checkpointLock
+    private volatile long mergeThreshold = DEFAULT_MERGE_THRESHOLD;
+    private ExecutorService merger;
+    private String loadedPath;                          // last loadFromFile (caller holds the write lock) ...
+    private long loadedSeq;                             // ... and the sequence number its files ended at
+
+    // open point-in-time views (see snapshot()); writers save old values into them
+    private final CopyOnWriteArrayList<CatalogSnapshot> snapshots = new CopyOnWriteArrayList<>();
+
+    // ---- journal shipping (replication) ----
+    private final CopyOnWriteArrayList<JournalListener> journalListeners = new CopyOnWriteArrayList<>();
+    private final ByteArrayOutputStream shipBytes = new ByteArrayOutputStream(); // guarded by logLock
+    private final DataOutputStream ship = new DataOutputStream(shipBytes);       // records of the current frame
+    private long shipFirstSeq;                                                   // guarded by logLock
+
+    // latency histograms and counters
+    private final ProductManagerMetrics metrics = new ProductManagerMetrics();
+
+    // background savers, one per file (see saveToFileAsync)
+    private final ConcurrentHashMap<String, AsyncPersister> persisters = new ConcurrentHashMap<>();
+
+    // off-heap storage for the products we own, null = plain heap objects
+    private final OffHeapStockTable stockTable;
+
+    public ProductManager() {
+        this(false);
     }
 
-    public String getProductID() { 
-        return productID; 
+    /**
+     * @param offHeapStock true to keep quantities, dates and recent activities of
+     *                     the products in off-heap memory (for multi-million-SKU catalogs)
+     */
+    public ProductManager(boolean offHeapStock) {
+        stockTable = offHeapStock ? new OffHeapStockTable() : null;
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 16 - 1) << 1;
+        stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) stripes[i] = new ReentrantLock();
     }
-    
-    public String getProductName() { 
-        return productName; 
+
+    // the lock that serializes mutations of this product ID
+    ReentrantLock lockFor(String id) {
+        return stripes[stripeOf(id)];
     }
-    
-    public LocalDate getEntryDate() { 
-        return lastUpdated; 
+
+    private int stripeOf(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
     }
-    public int getProductQuantity() { 
-        return productQuantity; 
+
+    /**
+     * Add a new product.
+     * Returns false if the product is null or the ID already exists.
+     */
+    public boolean addProduct(Product p) {
+        if (p == null) return false;
+        long start = System.nanoTime();
+        String id = p.getProductID();
+        ReentrantLock lock = lockFor(id);
+        stateLock.readLock().lock();
+        lock.lock();
+        try {
+            if (index.putIfAbsent(id, p) != null) return false;
+            synchronized (products) { products.put(id, p); }
+            attach(p);
+            history.record(id, ActivityType.ADD_PRODUCT, p.getProductQuantity(), p.getEntryDate());
+            log(Journal.OP_ADD_PRODUCT, id, p.getProductName(), p.getActivityCapacity(),
+                    p.getProductQuantity(), p.getEntryDate());
+            for (CatalogListener l : catalogListeners) l.productAdded(p);
+            return true;
+        } finally {
+            lock.unlock();
+            stateLock.readLock().unlock();
+            metrics.record(ProductManagerMetrics.Op.ADD_PRODUCT, start);
+        }
     }
 
-    
     /**
-     * Increase stock by q (q >= 0) and log an "AddToStock" activity.
-     * Throws IllegalArgumentException if q < 0 (caught by UI/manager).
+     * Bulk insert (catalog imports).
+     * Takes the store lock once for the whole list instead of once per product;
+     * tills wait for the batch, so keep batches to a few thousand products.
+     * Listeners get one catalogReloaded() instead of an event per product.
+     *
+     * @return the products that were not added because their ID already exists
+     *         (in the store or earlier in the list)
      */
+    public List<Product> addProducts(List<Product> batch) {
+        return addProducts(batch, true);
+    }
 
-    public void addQuantity(int q) {
-        
-        if (q < 0) throw new IllegalArgumentException("Quantity cannot be negative");
-        this.productQuantity += q;
-        this.lastUpdated = LocalDate.now();
-        activities.enqueue(new Activity("AddToStock", q));
+    /**
+     * addProducts without the listener event when notify is false: imports
+     * call this per batch and fireCatalogReloaded() once at the end, so a
+     * table model re-copies the catalog once per import, not once per batch.
+     */
+    List<Product> addProducts(List<Product> batch, boolean notify) {
+        ArrayList<Product> rejected = new ArrayList<>();
+        stateLock.writeLock().lock();
+        try {
+            for (Product p : batch) {
+                String id = p.getProductID();
+                if (index.putIfAbsent(id, p) != null) {
+                    rejected.add(p);
+                    continue;
+                }
+                synchronized (products) { products.put(id, p); }
+                attach(p);
+                history.record(id, ActivityType.ADD_PRODUCT, p.getProductQuantity(), p.getEntryDate());
+                log(Journal.OP_ADD_PRODUCT, id, p.getProductName(), p.getActivityCapacity(),
+                        p.getProductQuantity(), p.getEntryDate());
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        if (notify && rejected.size() < batch.size()) fireCatalogReloaded();
+        return rejected;
     }
 
-    
-/**
-     * Decrease stock by q, if enough in stock, and log "RemoveFromStock".
-     * Returns false when q < 0 or not enough stock; true on success.
+    /** Tells the catalog listeners that many products changed at once. */
+    void fireCatalogReloaded() {
+        for (CatalogListener l : catalogListeners) l.catalogReloaded();
+    }
+
+    /** Remove a product by ID. Returns false if not found. */
+    public boolean deleteProduct(String id) {
+        long start = System.nanoTime();
+        ReentrantLock lock = lockFor(id);
+        stateLock.readLock().lock();
+        lock.lock();
+        try {
+            Product removed = index.remove(id);
+            if (removed == null) return false;
+            synchronized (products) { products.remove(id); }
+            detach(removed);
+            rollups.remove(id);
+            forecast.remove(id);
+            log(Journal.OP_DELETE_PRODUCT, id, null, 0, EpochDays.todayDate());
+            for (CatalogListener l : catalogListeners) l.productRemoved(removed);
+            return true;
+        } finally {
+            lock.unlock();
+            stateLock.readLock().unlock();
+            metrics.record(ProductManagerMetrics.Op.DELETE_PRODUCT, start);
+        }
+    }
+
+    /** @return the product with this ID, or null if not found */
+    public Product getProduct(String id) {
+        return index.get(id);
+    }
+
+    /** @return operation metrics of this store (latencies, failures, bytes) */
+    public ProductManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return number of products in the store */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return total units in stock over all products.
+     * With off-heap storage this is one linear pass over the table.
+     */
+    public long getTotalStockUnits() {
+        if (stockTable != null) return stockTable.totalQuantity();
+        long sum = 0;
+        for (Product p : index.values()) sum += p.getProductQuantity();
+        return sum;
+    }
+
+    /**
+     * Changes how many recent activities a product keeps (see
+     * Product.getActivityCapacity). Journaled like a stock change, so it
+     * survives a restart and reaches replicas and checkpoints.
+     *
+     * @param capacity 1..Product.MAX_ACTIVITY_CAPACITY
+     * @return false if the ID is unknown
+     */
+    public boolean setActivityCapacity(String id, int capacity) {
+        Product.checkCapacity(capacity);
+        ReentrantLock lock = lockFor(id);
+        stateLock.readLock().lock();
+        lock.lock();
+        try {
+            Product p = index.get(id);
+            if (p == null) {
+                metrics.unknownProduct();
+                return false;
+            }
+            if (p.getActivityCapacity() == capacity) return true;
+            preserve(p);
+            p.setActivityCapacity(capacity);
+            log(Journal.OP_SET_CAPACITY, id, null, capacity, EpochDays.todayDate());
+            return true;
+        } finally {
+            lock.unlock();
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add q items to an existing product.
+     * Returns false if the ID is unknown or q is negative.
      */
-    public boolean removeQuantity(int q) {
+    public boolean addToStock(String id, int q) {
         if (q < 0) return false;
-        if (q > productQuantity) return false;
-        this.productQuantity -= q;
-        this.lastUpdated = LocalDate.now();
-        activities.enqueue(new Activity("RemoveFromStock", q));
+        long start = System.nanoTime();
+        ReentrantLock lock = lockFor(id);
+        stateLock.readLock().lock();
+        lock.lock();
+        try {
+            Product p = index.get(id);
+            if (p == null) {
+                metrics.unknownProduct();
+                return false;
+            }
+            preserve(p);
+            p.addQuantity(q);
+            log(Journal.OP_ADD_STOCK, id, null, q, p.getEntryDate());
+            return true;
+        } finally {
+            lock.unlock();
+            stateLock.readLock().unlock();
+            metrics.record(ProductManagerMetrics.Op.ADD_TO_STOCK, start);
+        }
+    }
+
+    /**
+     * Remove q items from an existing product.
+     * Returns false if the ID is unknown, q is negative or not enough stock.
+     */
+    public boolean removeFromStock(String id, int q) {
+        if (q < 0) return false;
+        long start = System.nanoTime();
+        ReentrantLock lock = lockFor(id);
+        stateLock.readLock().lock();
+        lock.lock();
+        try {
+            Product p = index.get(id);
+            if (p == null) {
+                metrics.unknownProduct();
+                return false;
+            }
+            preserve(p);
+            if (!p.removeQuantity(q)) {
+                metrics.insufficientStock();
+                return false;
+            }
+            log(Journal.OP_REMOVE_STOCK, id, null, q, p.getEntryDate());
+            return true;
+        } finally {
+            lock.unlock();
+            stateLock.readLock().unlock();
+            metrics.record(ProductManagerMetrics.Op.REMOVE_FROM_STOCK, start);
+        }
+    }
+
+    /**
+     * Apply a whole batch of stock changes (e.g. a delivery manifest) atomically.
+     * - Every line is validated first, in order, against the stock the earlier
+     *   lines would leave; if any line fails nothing is applied.
+     * - On success each line logs its Activity and one grouped journal entry is
+     *   written, so a crash never leaves half a batch behind.
+     * - Only the products' striped locks are held, in a fixed order, so batches
+     *   and single till operations do not deadlock.
+     *
+     * @return per-line report; nothing is persisted (see applyBatch(List, String))
+     */
+    public BatchResult applyBatch(List<StockChange> changes) {
+        return applyBatch(changes, null);
+    }
+
+    /**
+     * Same as applyBatch(List), then persists once with saveToFile(savePath)
+     * if the batch was applied. So receiving a delivery costs one flush.
+     *
+     * @param savePath file to save to, or null to skip saving
+     */
+    public BatchResult applyBatch(List<StockChange> changes, String savePath) {
+        long start = System.nanoTime();
+        int[] held = stripeIndexes(changes);
+        ArrayList<BatchResult.Line> report = new ArrayList<>(changes.size());
+        boolean ok = true;
+        stateLock.readLock().lock();
+        for (int s : held) stripes[s].lock();
+        try {
+            // 1) validate against projected stock
+            HashMap<String, Integer> projected = new HashMap<>();
+            BatchResult.Status[] status = new BatchResult.Status[changes.size()];
+            for (int i = 0; i < changes.size(); i++) {
+                StockChange c = changes.get(i);
+                Product p = index.get(c.getProductID());
+                if (p == null) {
+                    status[i] = BatchResult.Status.UNKNOWN_PRODUCT;
+                } else if (c.getQuantity() < 0) {
+                    status[i] = BatchResult.Status.INVALID_QUANTITY;
+                } else {
+                    int stock = projected.getOrDefault(p.getProductID(), p.getProductQuantity());
+                    if (c.getType() == StockChange.Type.REMOVE && c.getQuantity() > stock) {
+                        status[i] = BatchResult.Status.INSUFFICIENT_STOCK;
+                    } else {
+                        int delta = c.getType() == StockChange.Type.ADD ? c.getQuantity() : -c.getQuantity();
+                        try {
+                            projected.put(p.getProductID(), Math.addExact(stock, delta));
+                            status[i] = BatchResult.Status.VALID;
+                            continue;
+                        } catch (ArithmeticException e) {
+                            status[i] = BatchResult.Status.STOCK_OVERFLOW;
+                        }
+                    }
+                }
+                ok = false;
+            }
+
+            // 2) apply + log (only if every line is valid)
+            if (ok) {
+                Journal.Record[] records = new Journal.Record[changes.size()];
+                for (int i = 0; i < changes.size(); i++) {
+                    StockChange c = changes.get(i);
+                    Product p = index.get(c.getProductID());
+                    byte op;
+                    preserve(p);
+                    if (c.getType() == StockChange.Type.ADD) {
+                        p.addQuantity(c.getQuantity());
+                        op = Journal.OP_ADD_STOCK;
+                    } else {
+                        p.removeQuantity(c.getQuantity());
+                        op = Journal.OP_REMOVE_STOCK;
+                    }
+                    records[i] = new Journal.Record(0, op, c.getProductID(), null, c.getQuantity(), p.getEntryDate());
+                    status[i] = BatchResult.Status.APPLIED;
+                }
+                logBatch(records);
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                report.add(new BatchResult.Line(i, changes.get(i), status[i]));
+            }
+        } finally {
+            for (int i = held.length - 1; i >= 0; i--) stripes[held[i]].unlock();
+            stateLock.readLock().unlock();
+        }
+        boolean saved = ok && savePath != null && saveToFile(savePath);
+        metrics.record(ProductManagerMetrics.Op.APPLY_BATCH, start);
+        return new BatchResult(ok, saved, report);
+    }
+
+    // distinct stripe indexes touched by a batch, ascending (global lock order)
+    private int[] stripeIndexes(List<StockChange> changes) {
+        boolean[] used = new boolean[stripes.length];
+        int count = 0;
+        for (StockChange c : changes) {
+            int s = stripeOf(c.getProductID());
+            if (!used[s]) { used[s] = true; count++; }
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int s = 0; s < used.length; s++) if (used[s]) result[k++] = s;
+        return result;
+    }
+
+    /**
+     * Last (up to 4) activities of a product, sorted by quantity (low -> high).
+     * Returns null when the product does not exist.
+     */
+    public Activity[] getSortedActivities(String id) {
+        Product p = index.get(id);
+        if (p == null) return null;
+        Activity[] arr = p.getActivitiesAsArray();
+        Arrays.sort(arr, Comparator.comparingInt(Activity::getActivityQuantity));
+        return arr;
+    }
+
+    /**
+     * Point-in-time view of the whole catalog that stays consistent while
+     * tills keep writing (copy-on-first-write, see CatalogSnapshot).
+     * Mutations pause only while the product references are copied.
+     * Close the view when done.
+     */
+    public CatalogSnapshot snapshot() {
+        stateLock.writeLock().lock();
+        try {
+            Product[] all;
+            synchronized (products) { all = products.values().toArray(new Product[0]); }
+            CatalogSnapshot view = new CatalogSnapshot(all, lastSeq.get(), snapshots);
+            snapshots.add(view);
+            return view;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    // save a product's old values into the open views before it changes (caller holds its lock)
+    private void preserve(Product p) {
+        if (snapshots.isEmpty()) return;
+        for (CatalogSnapshot view : snapshots) view.preserve(p);
+    }
+
+    /** @return all products in display order (a copy, safe to iterate) */
+    public ArrayList<Product> getAllProducts() {
+        synchronized (products) {
+            return new ArrayList<>(products.values());
+        }
+    }
+
+    /**
+     * Case-insensitive search on product ID or name (contains match).
+     * An empty query returns every product (in display order).
+     */
+    public ArrayList<Product> searchByIdOrName(String q) {
+        if (q == null || q.trim().isEmpty()) return getAllProducts();
+        return searchByIdOrName(q, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Paged version of searchByIdOrName, served from the search index.
+     *
+     * @param offset number of matches to skip
+     * @param limit  max number of products returned
+     */
+    public ArrayList<Product> searchByIdOrName(String q, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return searchIndex.search(q, offset, limit);
+        } finally {
+            metrics.record(ProductManagerMetrics.Op.SEARCH, start);
+        }
+    }
+
+    /**
+     * Case-insensitive prefix search (ID matches first, then name matches).
+     *
+     * @param limit max number of products returned
+     */
+    public ArrayList<Product> searchByPrefix(String prefix, int limit) {
+        return searchIndex.searchByPrefix(prefix, limit);
+    }
+
+    /**
+     * All products ordered by name (A -> Z).
+     * Read from the maintained name order: no sorting, display order unchanged.
+     */
+    public ArrayList<Product> sortByNameAsc() {
+        return views.byName(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * All products ordered by quantity (low -> high).
+     * Read from the maintained quantity order: no sorting, display order unchanged.
+     */
+    public ArrayList<Product> sortByQuantityAsc() {
+        return views.byQuantity(0, Integer.MAX_VALUE);
+    }
+
+    /** @return one page of the name order (A -> Z) */
+    public ArrayList<Product> pageByName(int offset, int limit) {
+        return views.byName(offset, limit);
+    }
+
+    /** @return one page of the quantity order (low -> high) */
+    public ArrayList<Product> pageByQuantity(int offset, int limit) {
+        return views.byQuantity(offset, limit);
+    }
+
+    /**
+     * Products with min <= quantity <= max (e.g. 0..10), low -> high.
+     * O(log n + k) range query on the quantity order.
+     */
+    public ArrayList<Product> getProductsWithQuantityBetween(int min, int max) {
+        return views.quantityBetween(min, max, Integer.MAX_VALUE);
+    }
+
+    // ---------------- history ----------------
+
+    /**
+     * Movement history of a product between two dates (inclusive).
+     * Kept for every event, not just the last 4; works for deleted products too.
+     *
+     * @param type only events of this type, null for any type
+     */
+    public ActivityHistory.Slice getHistory(String id, ActivityType type, LocalDate from, LocalDate to) {
+        return history.query(id, type, from, to);
+    }
+
+    // ---------------- daily rollups ----------------
+
+    /** @return units added/removed of one product between two dates (inclusive) */
+    public DailyRollups.Movement getPeriodTotals(String id, LocalDate from, LocalDate to) {
+        return rollups.totals(id, from, to);
+    }
+
+    /** @return units added/removed over the whole catalog between two dates (inclusive) */
+    public DailyRollups.Movement getCatalogTotals(LocalDate from, LocalDate to) {
+        return rollups.catalogTotals(from, to);
+    }
+
+    /** @return units removed per day (index 0 = from), e.g. sales per day last month */
+    public long[] getDailyUnitsOut(String id, LocalDate from, LocalDate to) {
+        return rollups.dailyUnitsOut(id, from, to);
+    }
+
+    /** @return up to n products with the most units removed in the period, most first */
+    public List<DailyRollups.Movement> getTopMovers(LocalDate from, LocalDate to, int n) {
+        return rollups.topMovers(from, to, n);
+    }
+
+    /** @return up to n products with the fewest units removed in the period, slowest first */
+    public List<DailyRollups.Movement> getSlowMovers(LocalDate from, LocalDate to, int n) {
+        return rollups.slowMovers(index.values(), from, to, n);
+    }
+
+    // ---------------- forecasting ----------------
+
+    /** @return expected units removed per day (weighted recent average, 0 if never sold) */
+    public double getDailyConsumption(String id) {
+        return forecast.dailyRate(id);
+    }
+
+    /**
+     * @return days until the product runs out at its current consumption rate,
+     *         Double.POSITIVE_INFINITY if it does not sell or is unknown
+     */
+    public double getDaysToStockout(String id) {
+        Product p = index.get(id);
+        return p == null ? Double.POSITIVE_INFINITY : forecast.daysToStockout(p);
+    }
+
+    /** @return products that will run out within the given days, soonest first (no scan) */
+    public List<StockoutForecaster.Forecast> getStockoutsWithin(double days) {
+        return forecast.runningOutWithin(days, index::get);
+    }
+
+    // ---------------- low stock ----------------
+
+    /** @return true if the product's quantity is below its low-stock threshold */
+    public boolean isLowStock(Product p) {
+        return lowStock.isLow(p);
+    }
+
+    /** @return products below their low-stock threshold, ordered by ID (no scan) */
+    public ArrayList<Product> getLowStockProducts() {
+        return lowStock.lowProducts();
+    }
+
+    /** @return the global low-stock threshold (quantity below it is low) */
+    public int getLowStockThreshold() {
+        return lowStock.getThreshold();
+    }
+
+    /** Change the global low-stock threshold (re-checks every product once). */
+    public void setLowStockThreshold(int threshold) {
+        stateLock.writeLock().lock();
+        try {
+            lowStock.setThreshold(threshold, index.values());
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Override the low-stock threshold of one product.
+     * Returns false if the product does not exist.
+     */
+    public boolean setLowStockThreshold(String id, int threshold) {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Product p = index.get(id);
+            if (p == null) return false;
+            synchronized (p) { lowStock.setThreshold(p, threshold); }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Be told when products cross their low-stock threshold. */
+    public void addLowStockListener(LowStockListener l) {
+        lowStock.addListener(l);
+    }
+
+    public void removeLowStockListener(LowStockListener l) {
+        lowStock.removeListener(l);
+    }
+
+    // ---------------- stock listeners ----------------
+
+    /** Register a listener for stock changes of every product in this store. */
+    public void addStockListener(StockListener l) {
+        listeners.add(l);
+    }
+
+    public void removeStockListener(StockListener l) {
+        listeners.remove(l);
+    }
+
+    /** Register a listener for products being added/removed and for reloads. */
+    public void addCatalogListener(CatalogListener l) {
+        catalogListeners.add(l);
+    }
+
+    public void removeCatalogListener(CatalogListener l) {
+        catalogListeners.remove(l);
+    }
+
+    /**
+     * Registers a listener for the logged records of every later mutation
+     * (journal shipping). Mutations are paused for the call, so the listener
+     * gets exactly the records after the returned sequence number.
+     *
+     * @return sequence number of the last mutation before the listener
+     */
+    public long addJournalListener(JournalListener l) {
+        stateLock.writeLock().lock();
+        try {
+            synchronized (logLock) {
+                journalListeners.add(l);
+                return lastSeq.get();
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    public void removeJournalListener(JournalListener l) {
+        journalListeners.remove(l);
+    }
+
+    // called by products (under their lock) after each stock change
+    private void fireStockChanged(Product p, int oldQuantity, Activity a) {
+        views.stockChanged(p, oldQuantity, a);
+        lowStock.stockChanged(p, oldQuantity, a);
+        history.stockChanged(p, oldQuantity, a);
+        rollups.stockChanged(p, oldQuantity, a);
+        forecast.stockChanged(p, oldQuantity, a);
+        for (StockListener l : listeners) l.stockChanged(p, oldQuantity, a);
+    }
+
+    // hook a product into the indexes and listeners
+    private void attach(Product p) {
+        if (stockTable != null) p.moveTo(stockTable);
+        searchIndex.add(p);
+        views.add(p);
+        p.setStockListener(dispatcher);
+        lowStock.add(p);
+    }
+
+    private void detach(Product p) {
+        p.setStockListener(null);
+        if (stockTable != null) p.moveToHeap(); // the object stays usable after removal
+        searchIndex.remove(p);
+        views.remove(p);
+        lowStock.remove(p);
+    }
+
+    // ---------------- persistence ----------------
+
+    /**
+     * Save all products (with their activities) to a file.
+     * In journal mode, saving to the journaled file only syncs the journal
+     * (and may start a background compaction), so the cost does not depend
+     * on the catalog size. In checkpoint mode, saving to the checkpointed file
+     * writes only the products changed since the previous save.
+     * Returns false (and prints the error) if writing fails.
+     */
+    public boolean saveToFile(String path) {
+        long start = System.nanoTime();
+        try {
+            synchronized (logLock) {
+                if (journal != null && path.equals(journalBase)) {
+                    metrics.bytesSaved(journal.sync());
+                    if (journal.length() >= compactThreshold && !compacting) {
+                        compacting = true;
+                        compactor.submit(this::compact);
+                    }
+                    return true;
+                }
+            }
+            if (path.equals(checkpointBase)) {
+                metrics.bytesSaved(checkpoint(path));
+                return true;
+            }
+            byte[] image;
+            stateLock.writeLock().lock();
+            try {
+                image = snapshotBytes();
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            writeSnapshot(new File(path), image);
+            deleteSegments(path, ".delta.", Long.MAX_VALUE); // left by an earlier checkpoint mode, now stale
+            metrics.bytesSaved(image.length);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.record(ProductManagerMetrics.Op.SAVE, start);
+        }
+    }
+
+    /**
+     * Same as saveToFile, but on a background thread. Saves requested while one
+     * is still queued are coalesced into it, so bursts of changes cost one write.
+     *
+     * @return completes when the data is on disk (exceptionally if saving failed)
+     */
+    public CompletableFuture<Void> saveToFileAsync(String path) {
+        return persisters.computeIfAbsent(path, p -> new AsyncPersister(this, p)).requestSave();
+    }
+
+    /**
+     * Load products from a file previously written by saveToFile, then apply
+     * the checkpoint deltas and replay the journal records written after it.
+     * A missing file is not an error (first run); the store stays empty.
+     * Also continues the Activity ID sequence from the saved reservation mark.
+     */
+    public boolean loadFromFile(String path) {
+        return loadFromFile(path, pct -> { });
+    }
+
+    /**
+     * loadFromFile with progress reporting (for a progress bar).
+     *
+     * @param progress receives 0..100 as the snapshot is decoded
+     */
+    public boolean loadFromFile(String path, IntConsumer progress) {
+        File f = new File(path);
+        TreeMap<Long, File> segments = segments(path, ".journal.");
+        TreeMap<Long, File> deltas = segments(path, ".delta.");
+        File current = new File(path + ".journal");
+        if (!f.exists() && segments.isEmpty() && deltas.isEmpty() && !current.exists()) return false;
+        long start = System.nanoTime();
+        long bytes = f.length() + current.length();
+        for (File seg : segments.values()) bytes += seg.length();
+        for (File seg : deltas.values()) bytes += seg.length();
+        stateLock.writeLock().lock();
+        try {
+            clearCatalog();
+            SnapshotFormat.Snapshot snap = new SnapshotFormat.Snapshot(new ArrayList<>(), 0, 1, null);
+            if (f.exists()) {
+                boolean legacy = SnapshotFormat.isLegacy(f);
+                snap = SnapshotFormat.read(f, progress);
+                if (legacy) {
+                    // one-off migration: rewrite old serialized data in the binary format
+                    writeSnapshot(f, SnapshotFormat.encode(snap.products, snap.lastSeq, snap.activityMark, null));
+                }
+            }
+            snap = applyDeltas(path, snap, true);
+            install(snap);
+            long snapshotSeq = snap.lastSeq;
+            long activityMark = snap.activityMark;
+            Activity.restoreSequence(activityMark);
+            replayActivityMark = activityMark;
+
+            // replay: rotated segments (oldest first), then the live journal
+            lastSeq.set(snapshotSeq);
+            final long from = snapshotSeq;
+            for (File seg : segments.values()) Journal.replay(seg, r -> replayRecord(r, from));
+            Journal.replay(current, r -> replayRecord(r, from));
+            // never reuse IDs handed out before the restart (covered by the journaled mark)
+            Activity.restoreSequence(Math.max(replayActivityMark, Activity.peekNextID()));
+            loadedPath = path;
+            loadedSeq = snapshotSeq;
+            if (checkpointBase != null) resumeCheckpoints();
+        } catch (IOException e) {
+            System.err.println("Load failed: " + e.getMessage());
+            return false;
+        } finally {
+            stateLock.writeLock().unlock();
+            metrics.record(ProductManagerMetrics.Op.LOAD, start);
+        }
+        metrics.bytesLoaded(bytes);
+        progress.accept(100);
+        fireCatalogReloaded();
         return true;
     }
 
-    // still available if you want to manually add (rarely used now)
-    public void addActivity(Activity activity) {
-        activities.enqueue(activity);
+    // empty the store and every index (caller holds the write lock)
+    private void clearCatalog() {
+        for (Product p : index.values()) {
+            p.setStockListener(null);
+            if (stockTable != null) p.moveToHeap();
+        }
+        index.clear();
+        synchronized (products) { products.clear(); }
+        searchIndex.clear();
+        views.clear();
+        lowStock.clear();
+        history.clear();
+        rollups.clear();
+        forecast.clear();
+        if (dirty != null) dirty = new ConcurrentHashMap<>();
+    }
+
+    // products and history of a decoded snapshot into the (empty) store (caller holds the write lock)
+    private void install(SnapshotFormat.Snapshot snap) {
+        for (Product p : snap.products) putLoaded(p);
+        if (snap.history != null) {
+            snap.history.forEach((pid, c) -> history.put(pid, c.days, c.quantities, c.types));
+            rollups.addAll(history, index::containsKey);
+            forecast.addAll(history, index::get);
+        }
+    }
+
+    // insert without logging (loading / replay, caller holds the write lock)
+    private void putLoaded(Product p) {
+        Product old = index.put(p.getProductID(), p);
+        if (old != null) detach(old);
+        synchronized (products) { products.put(p.getProductID(), p); }
+        attach(p);
+    }
+
+    // ---------------- replication ----------------
+
+    /** @return sequence number of the last mutation logged or applied */
+    public long getLastSeq() {
+        return lastSeq.get();
+    }
+
+    /**
+     * Encodes the whole catalog as a snapshot image (same format as the data
+     * file), with mutations paused so it matches getLastSeq() exactly.
+     */
+    byte[] snapshotImage() {
+        stateLock.writeLock().lock();
+        try {
+            return snapshotBytes();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
     }
 
-    
     /**
-     * Return a typed array of the (up to) last 4 activities.
-     * Using typed array avoids ClassCastException.
+     * Replaces the catalog with a snapshot image from a primary (replica
+     * catch-up). Nothing is journaled.
+     * Returns false (and prints the error) if the image cannot be decoded.
      */
-    public Activity[] getActivitiesAsArray() {
-        return activities.toArray(new Activity[0]); // typed array to avoid ClassCastException
+    public boolean loadSnapshot(byte[] image) {
+        SnapshotFormat.Snapshot snap;
+        try {
+            snap = SnapshotFormat.decode(image);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Load failed: " + e.getMessage());
+            return false;
+        }
+        stateLock.writeLock().lock();
+        try {
+            clearCatalog();
+            install(snap);
+            lastSeq.set(snap.lastSeq);
+            Activity.restoreSequence(snap.activityMark);
+            if (checkpointBase != null) needsBase = true; // the files on disk are a different catalog now
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        fireCatalogReloaded();
+        return true;
     }
 
-    @Override
-    public String toString() {
-        return "Product ID: " + productID +
-               ", Name: " + productName +
-               ", Entry Date: " + lastUpdated +
-               ", Quantity: " + productQuantity;
-       }
+    /**
+     * Applies records shipped from a primary (replica side), in order.
+     * Records at or below getLastSeq() were applied before and are skipped, so
+     * a frame received twice (reconnect) does no harm. Stock changes reach the
+     * stock listeners as usual; added/deleted products are reported as one
+     * catalogReloaded(). Nothing is journaled.
+     */
+    public void applyReplicated(List<Journal.Record> records) {
+        boolean catalogChanged = false;
+        stateLock.writeLock().lock();
+        try {
+            for (Journal.Record r : records) {
+                if (r.seq <= lastSeq.get()) continue;
+                catalogChanged |= r.op == Journal.OP_ADD_PRODUCT || r.op == Journal.OP_DELETE_PRODUCT;
+                replayRecord(r, 0);
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        if (catalogChanged) {
+            fireCatalogReloaded();
+        }
+    }
+
+    // ---------------- journal mode ----------------
+
+    /**
+     * Turn on journal mode for a snapshot file (call after loadFromFile).
+     * From now on every mutation is appended to "<path>.journal".
+     */
+    public void enableJournal(String path) throws IOException {
+        if (path.equals(checkpointBase)) throw new IllegalStateException("Checkpoint mode is on for " + path);
+        synchronized (logLock) {
+            if (journal != null) journal.close();
+            journal = new Journal(new File(path + ".journal"));
+            journalBase = path;
+            loggedActivityMark = 0;
+            if (compactor == null) {
+                compactor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "journal-compactor");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+        }
+    }
+
+    /** Sync and close the journal; later saves write full snapshots again. */
+    public void closeJournal() throws IOException {
+        synchronized (logLock) {
+            if (journal == null) return;
+            journal.sync();
+            journal.close();
+            journal = null;
+            journalBase = null;
+        }
+    }
+
+    /** @param bytes journal size that triggers a background compaction */
+    public void setCompactThreshold(long bytes) {
+        this.compactThreshold = bytes;
+    }
+
+    // append one record when journal mode is on (caller holds the product's stripe lock)
+    private void log(byte op, String id, String name, int qty, LocalDate date) {
+        log(op, id, name, 0, qty, date);
+    }
+
+    // same, with the activity capacity of an OP_ADD_PRODUCT record
+    private void log(byte op, String id, String name, int capacity, int qty, LocalDate date) {
+        markDirty(op, id);
+        if (journal == null && journalListeners.isEmpty()) {
+            lastSeq.incrementAndGet();
+            return;
+        }
+        synchronized (logLock) {
+            try {
+                logActivityMark();
+                append(lastSeq.incrementAndGet(), op, id, name, capacity, qty, date);
+            } catch (IOException e) {
+                System.err.println("Journal write failed: " + e.getMessage());
+            }
+            shipFrame();
+        }
+    }
+
+    // append a batch as one OP_BATCH group (caller holds the stripe locks)
+    private void logBatch(Journal.Record[] records) {
+        if (records.length == 0) return;
+        for (Journal.Record r : records) markDirty(r.op, r.productID);
+        synchronized (logLock) {
+            try {
+                logActivityMark();
+            } catch (IOException e) {
+                System.err.println("Journal write failed: " + e.getMessage());
+            }
+            long header = lastSeq.incrementAndGet();
+            try {
+                append(header, Journal.OP_BATCH, "", null, 0, records.length, EpochDays.todayDate());
+                for (Journal.Record r : records) {
+                    append(lastSeq.incrementAndGet(), r.op, r.productID, null, 0, r.quantity, r.date);
+                }
+            } catch (IOException e) {
+                System.err.println("Journal write failed: " + e.getMessage());
+            }
+            shipFrame();
+        }
+    }
+
+    // write the Activity ID reservation mark if it moved, ahead of the records
+    // whose activities used the new IDs (caller holds logLock)
+    private void logActivityMark() throws IOException {
+        long mark = Activity.getReservedUpTo();
+        if (mark <= loggedActivityMark) return;
+        long seq = lastSeq.incrementAndGet();
+        if (!journalListeners.isEmpty()) {
+            if (shipBytes.size() == 0) shipFirstSeq = seq;
+            Journal.writeReservation(ship, seq, mark);
+        }
+        if (journal != null) journal.appendReservation(seq, mark);
+        loggedActivityMark = mark;
+    }
+
+    // one record to the journal (if on) and the frame for journal listeners (caller holds logLock)
+    private void append(long seq, byte op, String id, String name, int capacity, int qty,
+                        LocalDate date) throws IOException {
+        if (!journalListeners.isEmpty()) {
+            if (shipBytes.size() == 0) shipFirstSeq = seq;
+            Journal.write(ship, seq, op, id, name, capacity, qty, date);
+        }
+        if (journal != null) journal.append(seq, op, id, name, capacity, qty, date);
+    }
+
+    // hand the records of this log call to the journal listeners (caller holds logLock)
+    private void shipFrame() {
+        if (shipBytes.size() == 0) return;
+        byte[] frame = shipBytes.toByteArray();
+        shipBytes.reset();
+        long last = lastSeq.get();
+        for (JournalListener l : journalListeners) l.recordsLogged(shipFirstSeq, last, frame);
+    }
+
+    // apply one replayed record unless the snapshot already contains it
+    private void replayRecord(Journal.Record r, long snapshotSeq) {
+        if (r.seq <= snapshotSeq) return;
+        lastSeq.accumulateAndGet(r.seq, Math::max);
+        if (r.op == Journal.OP_RESERVE_IDS) {
+            replayActivityMark = Math.max(replayActivityMark, r.activityMark);
+            return;
+        }
+        markDirty(r.op, r.productID);
+        Product p = index.get(r.productID);
+        switch (r.op) {
+            case Journal.OP_ADD_PRODUCT:
+                putLoaded(new Product(r.productID, r.productName, r.quantity, r.date, r.activityCapacity));
+                history.record(r.productID, ActivityType.ADD_PRODUCT, r.quantity, r.date);
+                break;
+            case Journal.OP_DELETE_PRODUCT:
+                if (p == null) break;
+                index.remove(r.productID);
+                synchronized (products) { products.remove(r.productID); }
+                detach(p);
+                rollups.remove(r.productID);
+                forecast.remove(r.productID);
+                break;
+            case Journal.OP_ADD_STOCK:
+                if (p == null) break;
+                preserve(p);
+                p.addQuantity(r.quantity, r.date);
+                break;
+            case Journal.OP_REMOVE_STOCK:
+                if (p == null) break;
+                preserve(p);
+                p.removeQuantity(r.quantity, r.date);
+                break;
+            case Journal.OP_SET_CAPACITY:
+                if (p == null) break;
+                preserve(p);
+                p.setActivityCapacity(r.quantity);
+                break;
+            default:
+                System.err.println("Unknown journal op " + r.op + " at seq " + r.seq);
+        }
+    }
+
+    /**
+     * Background compaction:
+     * 1) with mutations paused: serialize the catalog and rotate the journal to
+     *    "<path>.journal.<seq>" (a new empty journal takes over),
+     * 2) after that: write the snapshot to a temp file and rename it into place,
+     * 3) delete the rotated segments the new snapshot now covers.
+     * A crash at any point leaves either the old or the new snapshot plus
+     * journals that replay correctly (records are skipped by sequence number).
+     */
+    private void compact() {
+        byte[] image;
+        long seq;
+        String base;
+        stateLock.writeLock().lock();
+        try {
+            synchronized (logLock) {
+                if (journal == null) { compacting = false; return; }
+                base = journalBase;
+                seq = lastSeq.get();
+                try {
+                    image = snapshotBytes();
+                    journal.close();
+                    File current = journal.getFile();
+                    Files.move(current.toPath(), new File(base + ".journal." + seq).toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                    journal = new Journal(current);
+                } catch (IOException e) {
+                    System.err.println("Compaction failed: " + e.getMessage());
+                    reopenJournal();
+                    compacting = false;
+                    return;
+                }
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        try {
+            writeSnapshot(new File(base), image);
+            metrics.bytesSaved(image.length);
+            deleteSegments(base, ".journal.", seq);
+        } catch (IOException e) {
+            System.err.println("Compaction failed: " + e.getMessage());
+        } finally {
+            synchronized (logLock) { compacting = false; }
+        }
+    }
+
+    // after a failed rotation make sure mutations can still be journaled (caller holds logLock)
+    private void reopenJournal() {
+        try {
+            journal = new Journal(new File(journalBase + ".journal"));
+        } catch (IOException e) {
+            System.err.println("Journal reopen failed, journal mode off: " + e.getMessage());
+            journal = null;
+            journalBase = null;
+        }
+    }
+
+    // ---------------- checkpoint mode ----------------
+
+    /**
+     * Turn on checkpoint mode for a data file (call after loadFromFile).
+     * From now on saveToFile(path) writes only the products changed since the
+     * previous save, as a delta segment "<path>.delta.<seq>":
+     * - the changes are collected with mutations paused (a pause as long as
+     *   the change, not the catalog), then written to a temp file, forced to
+     *   disk and renamed into place, so a crash never leaves a partial segment
+     * - once the deltas pass the merge threshold they are merged into the data
+     *   file on a background thread, so loading (after a crash too) reads the
+     *   data file plus a bounded amount of deltas
+     * The first save writes the whole data file unless the catalog is exactly
+     * what loadFromFile(path) read. Cannot be combined with journal mode on the
+     * same file.
+     */
+    public void enableCheckpoints(String path) {
+        if (path.equals(journalBase)) throw new IllegalStateException("Journal mode is on for " + path);
+        synchronized (checkpointLock) {
+            stateLock.writeLock().lock();
+            try {
+                checkpointBase = path;
+                dirty = new ConcurrentHashMap<>();
+                resumeCheckpoints();
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            if (merger == null) {
+                merger = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "checkpoint-merger");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+        }
+    }
+
+    /** Stop tracking changes; later saves write full snapshots again. */
+    public void disableCheckpoints() {
+        synchronized (checkpointLock) {
+            stateLock.writeLock().lock();
+            try {
+                checkpointBase = null;
+                dirty = null;
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** @param bytes total size of delta segments that triggers a background merge */
+    public void setCheckpointMergeThreshold(long bytes) {
+        this.mergeThreshold = bytes;
+    }
+
+    // continue the delta chain on disk if the catalog is what was loaded from
+    // it, else start over with a full checkpoint (caller holds the write lock)
+    private void resumeCheckpoints() {
+        needsBase = !(checkpointBase.equals(loadedPath) && lastSeq.get() == loadedSeq);
+        checkpointSeq = loadedSeq;
+    }
+
+    // remember a changed product for the next checkpoint (caller holds its stripe lock or the write lock)
+    private void markDirty(byte op, String id) {
+        ConcurrentHashMap<String, Long> d = dirty;
+        if (d == null) return;
+        if (op == Journal.OP_ADD_PRODUCT) d.put(id, lastSeq.get());
+        else if (!d.containsKey(id)) d.putIfAbsent(id, CHANGED);
+    }
+
+    /**
+     * One checkpoint of the checkpointed file: a delta segment with the
+     * products changed since the last one, or the whole file when there is no
+     * delta chain to continue.
+     *
+     * @return bytes written (0 if nothing changed)
+     */
+    private long checkpoint(String base) throws IOException {
+        synchronized (checkpointLock) {
+            byte[] image;
+            long seq;
+            boolean full;
+            stateLock.writeLock().lock();
+            try {
+                seq = lastSeq.get();
+                full = needsBase;
+                if (full) {
+                    image = snapshotBytes();
+                    history.forEach((id, c) -> {
+                        synchronized (c) { c.saved = c.size; }
+                    });
+                } else if (dirty.isEmpty()) {
+                    return 0;
+                } else {
+                    image = deltaBytes(seq);
+                }
+                dirty = new ConcurrentHashMap<>();
+                needsBase = false;
+                checkpointSeq = seq;
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            try {
+                if (full) {
+                    writeSnapshot(new File(base), image);
+                    baseGeneration++;
+                    deleteSegments(base, ".delta.", Long.MAX_VALUE);
+                } else {
+                    writeSnapshot(new File(base + ".delta." + seq), image);
+                    mergeIfNeeded(base);
+                }
+            } catch (IOException e) {
+                needsBase = true; // the collected changes are gone: rewrite everything next time
+                throw e;
+            }
+            return image.length;
+        }
+    }
+
+    // products changed since the last checkpoint, as a delta segment (caller holds the write lock)
+    private byte[] deltaBytes(long seq) {
+        DeltaSegment.Writer w = new DeltaSegment.Writer(checkpointSeq, seq, Activity.getReservedUpTo());
+        ArrayList<Map.Entry<String, Long>> added = new ArrayList<>();
+        for (Map.Entry<String, Long> e : dirty.entrySet()) {
+            String id = e.getKey();
+            Product p = index.get(id);
+            if (p == null) w.add(DeltaSegment.DELETED, id, null, history.columns(id));
+            else if (e.getValue() >= 0) added.add(e);
+            else w.add(DeltaSegment.CHANGED, id, p, history.columns(id));
+        }
+        // new products go to the end of the display order, in the order they were added
+        added.sort(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        for (Map.Entry<String, Long> e : added) {
+            String id = e.getKey();
+            w.add(DeltaSegment.ADDED, id, index.get(id), history.columns(id));
+        }
+        return w.finish();
+    }
+
+    // start a background merge once the deltas are too many or too big (caller holds checkpointLock)
+    private void mergeIfNeeded(String base) {
+        if (merging) return;
+        TreeMap<Long, File> deltas = segments(base, ".delta.");
+        long bytes = 0;
+        for (File f : deltas.values()) bytes += f.length();
+        if (bytes < mergeThreshold && deltas.size() < MAX_DELTAS) return;
+        merging = true;
+        merger.submit(this::mergeCheckpoints);
+    }
+
+    /**
+     * Background merge, from the files alone (tills never wait for it):
+     * 1) read the data file and apply the delta chain on top of it,
+     * 2) write the result to "<file>.merge" (temp file + rename),
+     * 3) rename that over the data file, unless a full checkpoint replaced
+     *    the data file meanwhile, and delete the merged deltas.
+     * A crash at any point leaves a data file plus deltas that load correctly
+     * (deltas the data file already covers are skipped).
+     */
+    private void mergeCheckpoints() {
+        String base;
+        long generation;
+        synchronized (checkpointLock) {
+            base = checkpointBase;
+            generation = baseGeneration;
+        }
+        try {
+            if (base == null) return;
+            File file = new File(base);
+            SnapshotFormat.Snapshot merged = applyDeltas(base, SnapshotFormat.read(file), false);
+            File tmp = new File(base + ".merge");
+            writeSnapshot(tmp, SnapshotFormat.encode(merged.products, merged.lastSeq,
+                    merged.activityMark, merged.history));
+            synchronized (checkpointLock) {
+                if (generation != baseGeneration || !base.equals(checkpointBase)) {
+                    Files.deleteIfExists(tmp.toPath());
+                    return;
+                }
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            metrics.bytesSaved(file.length());
+            deleteSegments(base, ".delta.", merged.lastSeq);
+        } catch (IOException e) {
+            System.err.println("Checkpoint merge failed: " + e.getMessage());
+        } finally {
+            synchronized (checkpointLock) { merging = false; }
+        }
+    }
+
+    /**
+     * The delta chain of a data file applied to its decoded snapshot. The
+     * chain stops at the first delta that is unreadable (checksum) or does
+     * not continue it; with quarantine that delta and the later ones are
+     * renamed to "*.bad", so they are never applied.
+     */
+    private static SnapshotFormat.Snapshot applyDeltas(String path, SnapshotFormat.Snapshot base,
+                                                       boolean quarantine) {
+        List<DeltaSegment.Delta> chain = new ArrayList<>();
+        long seq = base.lastSeq;
+        boolean broken = false;
+        for (Map.Entry<Long, File> seg : segments(path, ".delta.").entrySet()) {
+            if (seg.getKey() <= seq) continue; // already in the data file
+            File f = seg.getValue();
+            if (!broken) {
+                try {
+                    DeltaSegment.Delta d = DeltaSegment.read(f);
+                    if (d.baseSeq != seq) {
+                        throw new IOException("Delta segment " + f + " does not follow sequence " + seq);
+                    }
+                    chain.add(d);
+                    seq = d.lastSeq;
+                    continue;
+                } catch (IOException e) {
+                    System.err.println("Checkpoint skipped, later ones too: " + e.getMessage());
+                    broken = true;
+                }
+            }
+            if (quarantine && !f.renameTo(new File(f.getPath() + ".bad"))) {
+                System.err.println("Could not set aside " + f);
+            }
+        }
+        return DeltaSegment.apply(base, chain);
+    }
+
+    // catalog + last sequence number, as written to the snapshot file (caller holds the write lock)
+    private byte[] snapshotBytes() {
+        return SnapshotFormat.encode(getAllProducts(), lastSeq.get(), Activity.getReservedUpTo(), history);
+    }
+
+    // write to "<file>.tmp", force to disk, then atomically replace the file
+    private static void writeSnapshot(File file, byte[] image) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(image);
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // rotated journal segments (infix ".journal.") or delta segments (".delta.")
+    // of a snapshot file, keyed by their last sequence number
+    private static TreeMap<Long, File> segments(String path, String infix) {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File base = new File(path).getAbsoluteFile();
+        String prefix = base.getName() + infix;
+        File[] files = base.getParentFile().listFiles((dir, name) -> name.startsWith(prefix));
+        if (files == null) return segments;
+        for (File seg : files) {
+            try {
+                segments.put(Long.parseLong(seg.getName().substring(prefix.length())), seg);
+            } catch (NumberFormatException ignored) {
+                // not one of ours
+            }
+        }
+        return segments;
+    }
+
+    // delete the segments that end at or before a sequence number
+    private static void deleteSegments(String path, String infix, long upTo) throws IOException {
+        for (Map.Entry<Long, File> seg : segments(path, infix).entrySet()) {
+            if (seg.getKey() <= upTo) Files.deleteIfExists(seg.getValue().toPath());
+        }
+    }
 }
@@ -0,0 +1,188 @@
+package coursework;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Operation metrics of one ProductManager.
+ * <p>
+ * - one LatencyHistogram per operation (see Op)
+ * - failure counters (not enough stock, unknown product)
+ * - bytes written by saves / read by loads
+ * <p>
+ * Recording is lock- and allocation-free (LongAdders), so it stays on in
+ * production. Published through JMX (register) and optionally dumped to a
+ * text file at a fixed rate (startDump).
+ */
+public class ProductManagerMetrics implements ProductManagerMetricsMXBean {
+
+    /** Instrumented operations. */
+    public enum Op {
+        ADD_PRODUCT("addProduct"),
+        DELETE_PRODUCT("deleteProduct"),
+        ADD_TO_STOCK("addToStock"),
+        REMOVE_FROM_STOCK("removeFromStock"),
+        APPLY_BATCH("applyBatch"),
+        SEARCH("searchByIdOrName"),
+        SAVE("saveToFile"),
+        LOAD("loadFromFile"),
+        IMPORT("importFile");
+
+        private final String label;
+
+        Op(String label) { this.label = label; }
+
+        public String label() { return label; }
+    }
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Op.values().length];
+    private final LongAdder insufficientStock = new LongAdder();
+    private final LongAdder unknownProduct = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder bytesLoaded = new LongAdder();
+    private final LongAdder productsImported = new LongAdder();
+
+    private ScheduledExecutorService dumper; // guarded by this
+
+    public ProductManagerMetrics() {
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new LatencyHistogram();
+    }
+
+    // ---------------- recording ----------------
+
+    /** Records one call that started at startNanos (System.nanoTime()). */
+    public void record(Op op, long startNanos) {
+        latencies[op.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    void insufficientStock() { insufficientStock.increment(); }
+
+    void unknownProduct() { unknownProduct.increment(); }
+
+    void bytesSaved(long n) { bytesSaved.add(n); }
+
+    void bytesLoaded(long n) { bytesLoaded.add(n); }
+
+    void productsImported(long n) { productsImported.add(n); }
+
+    // ---------------- reading ----------------
+
+    /** @return latency histogram of one operation */
+    public LatencyHistogram latency(Op op) {
+        return latencies[op.ordinal()];
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> map = new LinkedHashMap<>();
+        for (Op op : Op.values()) map.put(op.label(), OperationStats.of(latency(op)));
+        return map;
+    }
+
+    @Override
+    public long getInsufficientStockFailures() { return insufficientStock.sum(); }
+
+    @Override
+    public long getUnknownProductFailures() { return unknownProduct.sum(); }
+
+    @Override
+    public long getBytesSaved() { return bytesSaved.sum(); }
+
+    @Override
+    public long getBytesLoaded() { return bytesLoaded.sum(); }
+
+    @Override
+    public long getProductsImported() { return productsImported.sum(); }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram h : latencies) h.reset();
+        insufficientStock.reset();
+        unknownProduct.reset();
+        bytesSaved.reset();
+        bytesLoaded.reset();
+        productsImported.reset();
+    }
+
+    /** @return human-readable summary, one line per operation */
+    public String report() {
+        StringBuilder sb = new StringBuilder("ProductManager metrics at ").append(LocalDateTime.now()).append('\n');
+        for (Map.Entry<String, OperationStats> e : getOperations().entrySet()) {
+            sb.append(String.format("%-18s %s%n", e.getKey(), e.getValue()));
+        }
+        sb.append("insufficientStockFailures=").append(getInsufficientStockFailures())
+          .append(" unknownProductFailures=").append(getUnknownProductFailures())
+          .append(" bytesSaved=").append(getBytesSaved())
+          .append(" bytesLoaded=").append(getBytesLoaded())
+          .append(" productsImported=").append(getProductsImported()).append('\n');
+        return sb.toString();
+    }
+
+    // ---------------- publishing ----------------
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * "coursework:type=ProductManager,name=&lt;name&gt;".
+     *
+     * @return false (and prints the error) if registration failed
+     */
+    public boolean register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("coursework:type=ProductManager,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+            return true;
+        } catch (JMException e) {
+            System.err.println("Metrics registration failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes report() to a file every periodSeconds (replacing its content),
+     * on a daemon thread. Replaces an earlier dump schedule.
+     */
+    public synchronized void startDump(File file, long periodSeconds) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Stops the periodic dump (if running). */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    // write to "<file>.tmp" and rename, so readers never see half a report
+    private void dump(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), report().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Metrics dump failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package coursework;
+
+import java.util.Map;
+
+/**
+ * JMX view of ProductManagerMetrics (register with ProductManagerMetrics.register).
+ */
+public interface ProductManagerMetricsMXBean {
+
+    /** @return latency stats per operation, keyed by operation name (e.g. "removeFromStock") */
+    Map<String, OperationStats> getOperations();
+
+    /** @return removeFromStock calls rejected because there was not enough stock */
+    long getInsufficientStockFailures();
+
+    /** @return stock changes rejected because the product ID was unknown */
+    long getUnknownProductFailures();
+
+    /** @return bytes written by saves (snapshots and journal syncs) */
+    long getBytesSaved();
+
+    /** @return bytes read by loads (snapshot plus journals) */
+    long getBytesLoaded();
+
+    /** @return products added by CSV imports */
+    long getProductsImported();
+
+    /** Clears all counters and histograms. */
+    void reset();
+}
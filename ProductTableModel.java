@@ -0,0 +1,168 @@
+package coursework;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Table model that reads cells straight from the Product objects.
+ * - Rows are just references to products (no Object[] copy per row); JTable only
+ *   asks for the cells of visible rows, so painting cost depends on the
+ *   viewport, not the catalog size.
+ * - Listens to the manager: one stock change fires one rowsUpdated event, an
+ *   added product one rowsInserted event, a deleted one rowsDeleted.
+ * - The rows are a view: the whole catalog, a sorted order or a search. A
+ *   catalog reload re-runs that view, so a sorted or filtered table stays
+ *   sorted or filtered; added products are appended to the catalog view and
+ *   inserted at their position in a sorted one.
+ * - Catalog reloads are coalesced: reloads arriving before the EDT got to
+ *   the pending one cause no extra catalog copy.
+ * - Manager callbacks can come from any thread (tills); they are forwarded
+ *   to the Swing event thread.
+ */
+public class ProductTableModel extends AbstractTableModel implements StockListener, CatalogListener {
+    private static final long serialVersionUID = 1L;
+
+    public static final String LOW_FLAG = "⚠ LOW";
+
+    private static final String[] COLUMNS = {"ID", "Name", "Quantity", "Last Updated", "Low Stock"};
+
+    private final transient ProductManager manager;
+
+    // rows currently shown (EDT only)
+    private List<Product> rows = new ArrayList<>();
+
+    // product -> row, built lazily when the first event needs it (EDT only)
+    private IdentityHashMap<Product, Integer> rowOf;
+
+    // how the rows were produced, re-run on reloads (null: the whole catalog in display order)
+    private transient Supplier<? extends List<Product>> view;
+
+    // order of the rows for a sorted view, null for the catalog or a search
+    private transient Comparator<Product> order;
+
+    // a catalogReloaded() copy is queued on the EDT and has not started yet
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    public ProductTableModel(ProductManager manager) {
+        this.manager = manager;
+        manager.addStockListener(this);
+        manager.addCatalogListener(this);
+    }
+
+    /**
+     * Show the result of a view (EDT only).
+     *
+     * @param products rows in display order (the list is copied if it cannot grow)
+     * @param view     produces the rows again after a catalog reload
+     *                 (null: the whole catalog, products added later appear at the end)
+     * @param order    the order of a sorted view, so products added later are inserted
+     *                 at their position; null for a search, which is re-run instead
+     */
+    public void setProducts(List<Product> products, Supplier<? extends List<Product>> view,
+                            Comparator<Product> order) {
+        this.view = view;
+        this.order = order;
+        show(products);
+    }
+
+    private void show(List<Product> products) {
+        this.rows = products instanceof ArrayList ? products : new ArrayList<>(products);
+        this.rowOf = null;
+        fireTableDataChanged();
+    }
+
+    /** @return the product shown in a row */
+    public Product getProductAt(int row) {
+        return rows.get(row);
+    }
+
+    // ---------------- TableModel ----------------
+
+    @Override public int getRowCount() { return rows.size(); }
+
+    @Override public int getColumnCount() { return COLUMNS.length; }
+
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Product p = rows.get(row);
+        switch (column) {
+            case 0: return p.getProductID();
+            case 1: return p.getProductName();
+            case 2: return p.getProductQuantity();
+            case 3: return p.getEntryDate();
+            case 4: return manager.isLowStock(p) ? LOW_FLAG : "";
+            default: return null;
+        }
+    }
+
+    // ---------------- manager events ----------------
+
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        SwingUtilities.invokeLater(() -> {
+            Integer row = rowIndex().get(product);
+            if (row != null) fireTableRowsUpdated(row, row);
+        });
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        SwingUtilities.invokeLater(() -> {
+            int row;
+            if (view == null) {
+                row = rows.size();
+                rows.add(product);
+                if (rowOf != null) rowOf.put(product, row);
+            } else if (order != null) {
+                row = Collections.binarySearch(rows, product, order);
+                if (row >= 0) return; // already shown (a reload got there first)
+                row = -row - 1;
+                rows.add(row, product);
+                rowOf = null; // later rows moved down
+            } else {
+                catalogReloaded(); // a search: let it decide whether the product matches
+                return;
+            }
+            fireTableRowsInserted(row, row);
+        });
+    }
+
+    @Override
+    public void productRemoved(Product product) {
+        SwingUtilities.invokeLater(() -> {
+            Integer row = rowIndex().get(product);
+            if (row == null) return;
+            rows.remove((int) row);
+            rowOf = null; // later rows moved up
+            fireTableRowsDeleted(row, row);
+        });
+    }
+
+    @Override
+    public void catalogReloaded() {
+        if (!reloadPending.compareAndSet(false, true)) return;
+        SwingUtilities.invokeLater(() -> {
+            reloadPending.set(false); // before the copy, so later changes queue another one
+            show(view == null ? manager.getAllProducts() : view.get());
+        });
+    }
+
+    private IdentityHashMap<Product, Integer> rowIndex() {
+        if (rowOf == null) {
+            rowOf = new IdentityHashMap<>(rows.size() * 2);
+            for (int i = 0; i < rows.size(); i++) rowOf.put(rows.get(i), i);
+        }
+        return rowOf;
+    }
+}
@@ -1,17 +1,25 @@
-
 package coursework;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * Minimal circular queue (FIFO) with fixed capacity.
  * Purpose:
- * - Used to keep ONLY the last 4 activities per product.
+ * - Used to keep ONLY the last few (by default 4) activities per product.
  * - When the queue is full, enqueue() automatically discards the oldest item.
  * <p>
+ * Indexing:
+ * - The backing array length is a power of two (>= capacity), so positions are
+ *   computed with "& mask" instead of "% capacity" on every operation.
+ * - forEach / copyTo / drainTo hand out the elements without allocating.
+ * <p>
  * Serialization:
  * - Implements Serializable so the queue contents can be saved/restored with products.
+ *   Queues saved before the power-of-two layout are converted on load.
  * <p>
  * Arrays & generics note:
  * - Provides a typed toArray(T[] a) so callers receive the correct runtime array type
@@ -20,7 +28,7 @@ import java.util.Arrays;
 public class Queue<T> implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    /** Backing array storing elements in circular fashion. */
+    /** Backing array storing elements in circular fashion (length = power of two). */
     private T[] data;
 
     /** Index of the logical head (oldest element). */
@@ -35,6 +43,9 @@ public class Queue<T> implements Serializable {
     /** Maximum capacity of the queue. */
     private int capacity;
 
+    /** data.length - 1 */
+    private transient int mask;
+
     /**
      * Constructs a fixed-capacity circular queue.
      *
@@ -42,8 +53,10 @@ public class Queue<T> implements Serializable {
      */
     @SuppressWarnings("unchecked")
     public Queue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
         this.capacity = capacity;
-        this.data = (T[]) new Object[capacity]; // backing array
+        this.data = (T[]) new Object[ceilPow2(capacity)]; // backing array
+        this.mask = data.length - 1;
         this.front = 0;
         this.rear = -1;
         this.size = 0;
@@ -53,7 +66,7 @@ public class Queue<T> implements Serializable {
      * Adds an item to the tail (rear).
      * If at capacity, the oldest item is removed automatically (FIFO).
      *
-     * Amortized O(1).
+     * O(1).
      *
      * @param item element to enqueue
      */
@@ -61,7 +74,7 @@ public class Queue<T> implements Serializable {
         if (size == capacity) {
             dequeue();         // drop oldest when full
         }
-        rear = (rear + 1) % capacity;
+        rear = (front + size) & mask;
         data[rear] = item;
         size++;
     }
@@ -74,7 +87,8 @@ public class Queue<T> implements Serializable {
     public T dequeue() {
         if (isEmpty()) return null;
         T removed = data[front];
-        front = (front + 1) % capacity;
+        data[front] = null;    // let it be collected
+        front = (front + 1) & mask;
         size--;
         return removed;
     }
@@ -88,6 +102,40 @@ public class Queue<T> implements Serializable {
     /** @return current number of elements in the queue */
     public int getSize()     { return size; }
 
+    /** @return maximum number of elements retained */
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Visits the elements in FIFO order (no allocation).
+     */
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i++) action.accept(data[(front + i) & mask]);
+    }
+
+    /**
+     * Copies the elements in FIFO order into the caller's buffer, keeping them.
+     * At most buf.length elements are copied (the oldest ones first).
+     *
+     * @return number of elements copied
+     */
+    public int copyTo(T[] buf) {
+        int n = Math.min(size, buf.length);
+        for (int i = 0; i < n; i++) buf[i] = data[(front + i) & mask];
+        return n;
+    }
+
+    /**
+     * Moves the elements in FIFO order into the caller's buffer, removing them.
+     * At most buf.length elements are moved (the oldest ones first).
+     *
+     * @return number of elements moved
+     */
+    public int drainTo(T[] buf) {
+        int n = Math.min(size, buf.length);
+        for (int i = 0; i < n; i++) buf[i] = dequeue();
+        return n;
+    }
+
     /**
      * Returns a typed array containing elements in FIFO order.
      * If the provided array is too small, a new one is created (preserving type).
@@ -100,10 +148,29 @@ public class Queue<T> implements Serializable {
      */
     public T[] toArray(T[] a) {
         if (a.length < size) a = Arrays.copyOf(a, size); // preserve component type
-        for (int i = 0; i < size; i++) {
-            a[i] = data[(front + i) % capacity];         // logical order: front -> rear
-        }
+        copyTo(a);                                       // logical order: front -> rear
         if (a.length > size) a[size] = null;             // optional per Collection.toArray contract
         return a;
     }
+
+    /** @return smallest power of two >= n */
+    static int ceilPow2(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // queues saved with a "% capacity" layout may have any array length: re-lay them out
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (data.length == ceilPow2(capacity) && front < data.length) {
+            mask = data.length - 1;
+            return;
+        }
+        T[] old = data;
+        data = (T[]) new Object[ceilPow2(capacity)];
+        for (int i = 0; i < size; i++) data[i] = old[(front + i) % old.length];
+        front = 0;
+        rear = size - 1;
+        mask = data.length - 1;
+    }
 }
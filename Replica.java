@@ -0,0 +1,190 @@
+package coursework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica: keeps a local ProductManager in sync with a primary
+ * (see ReplicationPrimary), so dashboards and reports read from it instead of
+ * the store the tills write to.
+ * <p>
+ * - On connect it sends the sequence number its store has applied. A fresh
+ *   store (or one too far behind) gets a snapshot first; a store loaded from a
+ *   local data file continues from that file's sequence number when the
+ *   primary still has the records after it.
+ * - Records are applied with ProductManager.applyReplicated, one mutation or
+ *   batch at a time, so readers never see half a batch. Listeners on the
+ *   replica store (e.g. a dashboard table) are notified as usual.
+ * - Lag is tracked from the primary's heartbeats: getLagRecords() is how many
+ *   records behind the replica is, getLagMillis() for how long it has been
+ *   behind (0 when caught up).
+ * - A lost connection is retried every RETRY_MILLIS until close().
+ * <p>
+ * The replica store must not be changed directly; activity IDs on the replica
+ * are its own, not the primary's.
+ */
+public class Replica implements Closeable {
+
+    /** Wait between connection attempts. */
+    static final long RETRY_MILLIS = 1000;
+
+    private final ProductManager store;
+    private final String host;
+    private final int port;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private volatile long primarySeq;
+    private volatile long behindSince; // System.currentTimeMillis() when lag started, 0 = caught up
+    private Thread worker;
+
+    /**
+     * @param store local store to keep in sync (empty, or loaded from a data file)
+     */
+    public Replica(ProductManager store, String host, int port) {
+        this.store = store;
+        this.host = host;
+        this.port = port;
+    }
+
+    /** Starts replicating on a background thread. */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::run, "replica");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** @return the replicated store (read from it, do not change it) */
+    public ProductManager getStore() {
+        return store;
+    }
+
+    /** @return true while connected to the primary */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** @return sequence number applied locally */
+    public long getAppliedSeq() {
+        return store.getLastSeq();
+    }
+
+    /** @return latest sequence number reported by the primary */
+    public long getPrimarySeq() {
+        return Math.max(primarySeq, store.getLastSeq());
+    }
+
+    /** @return records the primary has logged that are not applied here yet */
+    public long getLagRecords() {
+        return Math.max(0, primarySeq - store.getLastSeq());
+    }
+
+    /** @return milliseconds since the replica fell behind, 0 when caught up */
+    public long getLagMillis() {
+        long since = behindSince;
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+
+    /** Stops replicating (the store keeps its data). */
+    @Override
+    public void close() {
+        Thread w;
+        synchronized (this) {
+            running = false;
+            w = worker;
+        }
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+        if (w != null) {
+            try {
+                w.join(RETRY_MILLIS * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ---------------- replication loop ----------------
+
+    private void run() {
+        while (running) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(host, port), (int) RETRY_MILLIS * 5);
+                s.setTcpNoDelay(true);
+                connected = true;
+                follow(new DataInputStream(new BufferedInputStream(s.getInputStream())),
+                       new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+            } catch (IOException e) {
+                if (running && connected) System.err.println("Replication connection lost: " + e.getMessage());
+            } finally {
+                connected = false;
+                socket = null;
+            }
+            if (!running) return;
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeLong(store.getLastSeq());
+        out.flush();
+        while (running) {
+            byte type = in.readByte();
+            if (type == ReplicationPrimary.HEARTBEAT) {
+                primarySeq = Math.max(primarySeq, in.readLong());
+            } else {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                apply(type, bytes);
+            }
+            updateLag();
+            // acknowledge once the messages that already arrived are applied
+            if (in.available() == 0) {
+                out.writeLong(store.getLastSeq());
+                out.flush();
+            }
+        }
+    }
+
+    private void apply(byte type, byte[] bytes) throws IOException {
+        if (type == ReplicationPrimary.SNAPSHOT) {
+            if (!store.loadSnapshot(bytes)) throw new IOException("bad snapshot from primary");
+            primarySeq = store.getLastSeq(); // the primary may have restarted with a lower sequence
+        } else if (type == ReplicationPrimary.RECORDS) {
+            List<Journal.Record> records = new ArrayList<>();
+            Journal.replay(new ByteArrayInputStream(bytes), records::add);
+            store.applyReplicated(records);
+        } else {
+            throw new IOException("unknown message type " + type);
+        }
+        primarySeq = Math.max(primarySeq, store.getLastSeq());
+    }
+
+    private void updateLag() {
+        if (store.getLastSeq() >= primarySeq) behindSince = 0;
+        else if (behindSince == 0) behindSince = System.currentTimeMillis();
+    }
+}
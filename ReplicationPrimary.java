@@ -0,0 +1,277 @@
+package coursework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primary side of journal shipping: streams every mutation of a
+ * ProductManager to read replicas (see Replica) over TCP.
+ * <p>
+ * - Registered as a JournalListener, so it receives each mutation (or batch)
+ *   as journal bytes, in sequence order, and keeps the most recent ones in an
+ *   in-memory backlog (BACKLOG_BYTES).
+ * - A replica connects and sends the sequence number it has applied. If the
+ *   backlog still holds everything after it (and that fits in the replica's
+ *   queue), the primary streams from there; otherwise it first sends a full
+ *   snapshot image and then streams from the snapshot's sequence number.
+ * - Every replica has its own queue and sender thread, so a slow replica never
+ *   blocks the tills. A replica whose queue overflows is disconnected; it
+ *   reconnects and catches up like a new one.
+ * - When there is nothing to send, a heartbeat with the primary's sequence
+ *   number goes out every HEARTBEAT_MILLIS, so replicas can measure their lag.
+ *   Replicas acknowledge what they applied (see getReplicaLag()).
+ * <p>
+ * Protocol (DataOutputStream, big-endian):
+ * <pre>
+ * replica -> primary : long appliedSeq, then a long ack per applied message
+ * primary -> replica : 'S' int length, snapshot image   (SnapshotFormat)
+ *                      'R' int length, journal records  (Journal format)
+ *                      'H' long primarySeq               (heartbeat)
+ * </pre>
+ * Load the store before starting the primary: a reload resets its sequence.
+ */
+public class ReplicationPrimary implements JournalListener, Closeable {
+
+    /** Bytes of recent records kept for replicas that reconnect. */
+    static final long BACKLOG_BYTES = 32L * 1024 * 1024;
+
+    /** Messages queued per replica before it is dropped. */
+    static final int REPLICA_QUEUE = 100_000;
+
+    /** Heartbeat interval when idle. */
+    static final long HEARTBEAT_MILLIS = 500;
+
+    static final byte SNAPSHOT = 'S';
+    static final byte RECORDS = 'R';
+    static final byte HEARTBEAT = 'H';
+
+    /** Records of one mutation or batch, as shipped. */
+    private static final class Frame {
+        final long firstSeq;
+        final long lastSeq;
+        final byte type;
+        final byte[] bytes;
+
+        Frame(long firstSeq, long lastSeq, byte type, byte[] bytes) {
+            this.firstSeq = firstSeq;
+            this.lastSeq = lastSeq;
+            this.type = type;
+            this.bytes = bytes;
+        }
+    }
+
+    /** One connected replica. */
+    private final class Link {
+        final Socket socket;
+        final String name;
+        final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>(REPLICA_QUEUE);
+        volatile long ackedSeq;
+        volatile boolean closed;
+
+        Link(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        // stop shipping to this replica without any I/O (safe under the journal lock);
+        // the sender thread sees the flag and closes the socket
+        void drop() {
+            closed = true;
+            links.remove(this);
+        }
+
+        void close() {
+            drop();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already gone
+            }
+        }
+    }
+
+    private final ProductManager manager;
+    private final ServerSocket server;
+    private final CopyOnWriteArrayList<Link> links = new CopyOnWriteArrayList<>();
+
+    // ---- backlog (guarded by this) ----
+    private final ArrayDeque<Frame> backlog = new ArrayDeque<>();
+    private long backlogBytes;
+    private long coveredFrom = Long.MAX_VALUE; // every record after this seq is in the backlog
+
+    private volatile boolean running;
+
+    /**
+     * @param manager store whose mutations are shipped
+     * @param port    TCP port for replicas (0 = any free port)
+     */
+    public ReplicationPrimary(ProductManager manager, int port) throws IOException {
+        this.manager = manager;
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+    }
+
+    /** Starts shipping and accepting replicas. */
+    public void start() {
+        running = true;
+        long seq = manager.addJournalListener(this);
+        synchronized (this) {
+            if (coveredFrom == Long.MAX_VALUE) coveredFrom = seq;
+        }
+        daemon(this::acceptLoop, "replication-accept").start();
+    }
+
+    /** @return the port replicas connect to */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** @return acknowledged lag in records per connected replica (address -> records behind) */
+    public Map<String, Long> getReplicaLag() {
+        long seq = manager.getLastSeq();
+        Map<String, Long> lag = new LinkedHashMap<>();
+        for (Link l : links) lag.put(l.name, Math.max(0, seq - l.ackedSeq));
+        return lag;
+    }
+
+    /** Stops accepting replicas and disconnects the connected ones. */
+    @Override
+    public void close() {
+        running = false;
+        manager.removeJournalListener(this);
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        for (Link l : links) l.close();
+    }
+
+    // ---------------- shipping (tills' threads, under the journal lock: no I/O here) ----------------
+
+    @Override
+    public synchronized void recordsLogged(long firstSeq, long lastSeq, byte[] frame) {
+        Frame f = new Frame(firstSeq, lastSeq, RECORDS, frame);
+        if (coveredFrom == Long.MAX_VALUE) coveredFrom = firstSeq - 1;
+        backlog.addLast(f);
+        backlogBytes += frame.length;
+        while (backlogBytes > BACKLOG_BYTES && backlog.size() > 1) {
+            Frame old = backlog.removeFirst();
+            backlogBytes -= old.bytes.length;
+            coveredFrom = old.lastSeq;
+        }
+        for (Link l : links) {
+            if (!l.queue.offer(f)) l.drop(); // too far behind: reconnect + catch up
+        }
+    }
+
+    // ---------------- replicas ----------------
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                daemon(() -> serve(new Link(socket)), "replication-sender").start();
+            } catch (IOException e) {
+                if (running) System.err.println("Replication accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Link link) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(link.socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(link.socket.getOutputStream()));
+            long from = in.readLong();
+            link.ackedSeq = from;
+            subscribe(link, from);
+            daemon(() -> readAcks(link, in), "replication-acks").start();
+            while (!link.closed) {
+                Frame f = link.queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (f == null) {
+                    out.writeByte(HEARTBEAT);
+                    out.writeLong(manager.getLastSeq());
+                } else {
+                    out.writeByte(f.type);
+                    out.writeInt(f.bytes.length);
+                    out.write(f.bytes);
+                }
+                if (link.queue.isEmpty()) out.flush();
+            }
+        } catch (SocketException e) {
+            // replica went away or was dropped
+        } catch (IOException e) {
+            if (!link.closed) System.err.println("Replication to " + link.name + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            link.close();
+        }
+    }
+
+    // queue what the replica is missing, then let it receive live records
+    private void subscribe(Link link, long from) {
+        while (true) {
+            synchronized (this) {
+                if (from >= coveredFrom && from <= manager.getLastSeq()
+                        && missingFrames(from) <= link.queue.remainingCapacity()) {
+                    for (Frame f : backlog) {
+                        if (f.lastSeq > from) link.queue.add(f);
+                    }
+                    links.add(link);
+                    return;
+                }
+            }
+            // not in the backlog, or more of it than the replica's queue holds
+            // (new replica, or too far behind): full snapshot first,
+            // taken outside our lock (it pauses mutations, which call recordsLogged)
+            byte[] image = manager.snapshotImage();
+            long seq = SnapshotFormat.lastSeq(image);
+            if (!link.queue.offer(new Frame(seq, seq, SNAPSHOT, image))) {
+                link.close();
+                return;
+            }
+            from = seq;
+        }
+    }
+
+    // backlog frames with records after from (caller holds this)
+    private int missingFrames(long from) {
+        int n = 0;
+        Iterator<Frame> newestFirst = backlog.descendingIterator();
+        while (newestFirst.hasNext() && newestFirst.next().lastSeq > from) n++;
+        return n;
+    }
+
+    private void readAcks(Link link, DataInputStream in) {
+        try {
+            while (!link.closed) link.ackedSeq = in.readLong();
+        } catch (IOException e) {
+            link.close();
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,242 @@
+package coursework;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Whole-catalog reports written straight to CSV files.
+ * <p>
+ * Every report reads one CatalogSnapshot, so it is consistent even while the
+ * tills keep selling, and works like this:
+ * - the catalog is cut into CHUNK products, each chunk is formatted into CSV
+ *   text by a task on a ForkJoinPool (all cores)
+ * - finished chunks are written to the file in catalog order; at most two
+ *   chunks per core are in flight, so memory does not grow with the catalog
+ * - the file is written as "&lt;file&gt;.tmp" and renamed when complete, so a
+ *   reader never sees half a report
+ * <p>
+ * Reports:
+ * - deadStock        : products not updated for N days or more
+ * - stockDistribution: products and units per quantity range
+ * - movementSummary  : units in/out per product over a period (DailyRollups,
+ *                      these are live figures, not part of the snapshot)
+ * <p>
+ * All report methods return the number of data rows written, or -1 (error
+ * printed) if the file could not be written.
+ */
+public class ReportEngine {
+
+    /** Products per task. */
+    static final int CHUNK = 16_384;
+
+    private final ProductManager manager;
+    private final ForkJoinPool pool;
+
+    public ReportEngine(ProductManager manager) {
+        this(manager, ForkJoinPool.commonPool());
+    }
+
+    public ReportEngine(ProductManager manager, ForkJoinPool pool) {
+        this.manager = manager;
+        this.pool = pool;
+    }
+
+    // ---------------- reports ----------------
+
+    /**
+     * Products whose last update is at least days days ago, in catalog order.
+     * Columns: id, name, quantity, lastUpdated, daysIdle
+     */
+    public long deadStock(Path out, int days) {
+        int today = EpochDays.today();
+        try (CatalogSnapshot view = manager.snapshot()) {
+            return writeChunked(out, "id,name,quantity,lastUpdated,daysIdle", view.size(), (i, sb) -> {
+                LocalDate updated = view.getLastUpdated(i);
+                long idle = today - updated.toEpochDay();
+                if (idle < days) return 0;
+                appendField(sb, view.getProductID(i)).append(',');
+                appendField(sb, view.getProductName(i)).append(',')
+                        .append(view.getQuantity(i)).append(',')
+                        .append(updated).append(',')
+                        .append(idle).append('\n');
+                return 1;
+            });
+        }
+    }
+
+    /**
+     * Number of products and units in stock per quantity range.
+     * Columns: from, to (inclusive, empty = no limit), products, units
+     *
+     * @param bounds ascending lower bounds of the ranges after the first, e.g.
+     *               1, 10, 100 gives 0, 1-9, 10-99, 100+
+     */
+    public long stockDistribution(Path out, int... bounds) {
+        int[] lower = new int[bounds.length + 1];
+        System.arraycopy(bounds, 0, lower, 1, bounds.length);
+        for (int i = 1; i < lower.length; i++) {
+            if (lower[i] <= lower[i - 1]) throw new IllegalArgumentException("Bounds must be ascending and positive");
+        }
+        long[][] totals; // [0] = products, [1] = units per range
+        try (CatalogSnapshot view = manager.snapshot()) {
+            totals = distribution(view, lower);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException e) {
+            System.err.println("Report failed: " + e.getCause());
+            return -1;
+        }
+        return writeChunked(out, "from,to,products,units", lower.length, (i, sb) -> {
+            sb.append(lower[i]).append(',');
+            if (i + 1 < lower.length) sb.append(lower[i + 1] - 1);
+            sb.append(',').append(totals[0][i]).append(',').append(totals[1][i]).append('\n');
+            return 1;
+        });
+    }
+
+    /**
+     * Units added and removed per product between two dates (inclusive),
+     * products without movement included, in catalog order.
+     * Columns: id, name, quantity, unitsIn, unitsOut, net
+     */
+    public long movementSummary(Path out, LocalDate from, LocalDate to) {
+        try (CatalogSnapshot view = manager.snapshot()) {
+            return writeChunked(out, "id,name,quantity,unitsIn,unitsOut,net", view.size(), (i, sb) -> {
+                String id = view.getProductID(i);
+                DailyRollups.Movement m = manager.getPeriodTotals(id, from, to);
+                appendField(sb, id).append(',');
+                appendField(sb, view.getProductName(i)).append(',')
+                        .append(view.getQuantity(i)).append(',')
+                        .append(m.getUnitsIn()).append(',')
+                        .append(m.getUnitsOut()).append(',')
+                        .append(m.getUnitsIn() - m.getUnitsOut()).append('\n');
+                return 1;
+            });
+        }
+    }
+
+    // ---------------- parallel parts ----------------
+
+    /** Formats row i of a report into sb. */
+    @FunctionalInterface
+    private interface RowFormatter {
+        /** @return number of rows appended (0 = row skipped) */
+        int format(int i, StringBuilder sb);
+    }
+
+    /** CSV text of one chunk. */
+    private static final class Chunk {
+        final byte[] bytes;
+        final int rows;
+
+        Chunk(byte[] bytes, int rows) {
+            this.bytes = bytes;
+            this.rows = rows;
+        }
+    }
+
+    // formats rows 0..size-1 in parallel chunks, writes them in order to out
+    private long writeChunked(Path out, String header, int size, RowFormatter rows) {
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        long written = 0;
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+        int inFlight = pool.getParallelism() * 2;
+        try {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                os.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+                for (int from = 0; from < size; from += CHUNK) {
+                    int start = from, end = Math.min(size, from + CHUNK);
+                    pending.add(pool.submit(() -> format(rows, start, end)));
+                    while (pending.size() >= inFlight) written += write(os, pending.poll().get());
+                }
+                while (!pending.isEmpty()) written += write(os, pending.poll().get());
+            }
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } catch (IOException e) {
+            System.err.println("Report failed: " + e.getMessage());
+        } catch (ExecutionException e) {
+            System.err.println("Report failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<Chunk> f : pending) f.cancel(true);
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException ignored) {
+            // best effort
+        }
+        return -1;
+    }
+
+    private static Chunk format(RowFormatter rows, int from, int to) {
+        StringBuilder sb = new StringBuilder((to - from) * 48);
+        int n = 0;
+        for (int i = from; i < to; i++) n += rows.format(i, sb);
+        return new Chunk(sb.toString().getBytes(StandardCharsets.UTF_8), n);
+    }
+
+    private static int write(OutputStream os, Chunk c) throws IOException {
+        os.write(c.bytes);
+        return c.rows;
+    }
+
+    // products / units per range, one partial histogram per chunk, merged
+    private long[][] distribution(CatalogSnapshot view, int[] lower)
+            throws InterruptedException, ExecutionException {
+        ArrayDeque<Future<long[][]>> parts = new ArrayDeque<>();
+        for (int from = 0; from < view.size(); from += CHUNK) {
+            int start = from, end = Math.min(view.size(), from + CHUNK);
+            parts.add(pool.submit(() -> {
+                long[][] t = new long[2][lower.length];
+                for (int i = start; i < end; i++) {
+                    int q = view.getQuantity(i);
+                    int r = Arrays.binarySearch(lower, q);
+                    if (r < 0) r = -r - 2; // range whose lower bound is below q
+                    if (r < 0) r = 0;
+                    t[0][r]++;
+                    t[1][r] += q;
+                }
+                return t;
+            }));
+        }
+        long[][] totals = new long[2][lower.length];
+        for (Future<long[][]> f : parts) {
+            long[][] t = f.get();
+            for (int r = 0; r < lower.length; r++) {
+                totals[0][r] += t[0][r];
+                totals[1][r] += t[1][r];
+            }
+        }
+        return totals;
+    }
+
+    // CSV field, quoted when it contains a separator, quote or line break
+    private static StringBuilder appendField(StringBuilder sb, String s) {
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) return sb.append(s);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+}
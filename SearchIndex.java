@@ -0,0 +1,291 @@
+package coursework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incrementally maintained search index over product ID and name.
+ * <p>
+ * Structures:
+ * - prefix maps : sorted maps keyed by lower-case ID / name, so a prefix query
+ *                 is one range lookup, O(log n + k)
+ * - trigrams    : 3-character substrings (lower-case) -> posting list of product
+ *                 slots, used for case-insensitive "contains" queries
+ * - slots       : int handle per product, handed out in insertion order and
+ *                 never reused, so postings are plain int arrays that stay
+ *                 sorted as they are appended to
+ * <p>
+ * A contains query walks the shortest posting list among the query's trigrams,
+ * probes the second shortest by binary search (nothing is copied or sorted)
+ * and verifies each remaining candidate, stopping when the page is full, so
+ * the cost depends on how selective the query is, not on the catalog size.
+ * Queries shorter than 3 characters fall back to a scan that stops as soon as
+ * the requested page is full.
+ * <p>
+ * Deleting a product only empties its slot; stale postings are filtered out at
+ * query time. When more than half of the slots or posting entries are stale
+ * the index rebuilds itself, renumbering the live slots in the same order.
+ * <p>
+ * Results are returned in slot order, i.e. insertion order (the store's
+ * display order), which is stable between calls, so offset/limit pagination
+ * is consistent.
+ */
+public class SearchIndex {
+
+    // ---- slots ----
+    private Product[] slots = new Product[1024];
+    private int slotCount;                  // highest used slot + 1
+    private int deadSlots;                  // emptied slots below slotCount
+    private final HashMap<String, Integer> slotOf = new HashMap<>();
+
+    // ---- prefix maps (key = lower-case text + '\0' + ID, unique) ----
+    private final TreeMap<String, Product> idPrefix = new TreeMap<>();
+    private final TreeMap<String, Product> namePrefix = new TreeMap<>();
+
+    // ---- trigram postings ----
+    private final HashMap<Long, IntList> postings = new HashMap<>();
+    private long postingEntries;
+    private long staleEntries;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Growable int array used for posting lists (ascending: slots are appended in order). */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        // first index >= from with data[index] >= v (size if none)
+        int lowerBound(int v, int from) {
+            int lo = from, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (data[mid] < v) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // ---------------- updates ----------------
+
+    /** Adds a product (call when it is added to the store). */
+    public void add(Product p) {
+        lock.writeLock().lock();
+        try {
+            if (slotOf.containsKey(p.getProductID())) return;
+            int slot = nextSlot();
+            slots[slot] = p;
+            slotOf.put(p.getProductID(), slot);
+            idPrefix.put(key(p.getProductID(), p), p);
+            namePrefix.put(key(p.getProductName(), p), p);
+            for (long g : trigrams(p)) {
+                postings.computeIfAbsent(g, k -> new IntList()).add(slot);
+                postingEntries++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes a product (call when it is deleted from the store). */
+    public void remove(Product p) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotOf.remove(p.getProductID());
+            if (slot == null) return;
+            slots[slot] = null;
+            deadSlots++;
+            idPrefix.remove(key(p.getProductID(), p));
+            namePrefix.remove(key(p.getProductName(), p));
+            staleEntries += trigrams(p).length;
+            if (staleEntries * 2 > postingEntries || deadSlots * 2 > slotCount) rebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops everything (call before reloading the store). */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slots = new Product[1024];
+            slotCount = 0;
+            deadSlots = 0;
+            slotOf.clear();
+            idPrefix.clear();
+            namePrefix.clear();
+            postings.clear();
+            postingEntries = 0;
+            staleEntries = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int nextSlot() {
+        if (slotCount == slots.length) slots = Arrays.copyOf(slots, slotCount * 2);
+        return slotCount++;
+    }
+
+    // renumber the live slots densely (same order) and rebuild their postings
+    private void rebuild() {
+        int live = 0;
+        for (int s = 0; s < slotCount; s++) {
+            if (slots[s] != null) slots[live++] = slots[s];
+        }
+        Arrays.fill(slots, live, slotCount, null);
+        slotCount = live;
+        deadSlots = 0;
+        postings.clear();
+        postingEntries = 0;
+        staleEntries = 0;
+        for (int s = 0; s < slotCount; s++) {
+            slotOf.put(slots[s].getProductID(), s);
+            for (long g : trigrams(slots[s])) {
+                postings.computeIfAbsent(g, k -> new IntList()).add(s);
+                postingEntries++;
+            }
+        }
+    }
+
+    // ---------------- queries ----------------
+
+    /**
+     * Case-insensitive "contains" search on ID or name.
+     * An empty query matches every product.
+     *
+     * @param q      query text
+     * @param offset number of matches to skip (pagination)
+     * @param limit  max number of results to return
+     * @return matching products, in insertion order
+     */
+    public ArrayList<Product> search(String q, int offset, int limit) {
+        String needle = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
+        ArrayList<Product> page = new ArrayList<>();
+        if (limit <= 0) return page;
+        lock.readLock().lock();
+        try {
+            if (needle.length() < 3) {
+                // too short for trigrams: scan, stop when the page is full
+                int skipped = 0;
+                for (int s = 0; s < slotCount && page.size() < limit; s++) {
+                    Product p = slots[s];
+                    if (p == null || !matches(p, needle)) continue;
+                    if (skipped++ < offset) continue;
+                    page.add(p);
+                }
+                return page;
+            }
+
+            // the two most selective trigrams of the query
+            IntList best = null, second = null;
+            for (int i = 0; i + 3 <= needle.length(); i++) {
+                IntList list = postings.get(gram(needle, i));
+                if (list == null) return page; // some trigram never occurs
+                if (best == null || list.size < best.size) {
+                    second = best;
+                    best = list;
+                } else if (list != best && (second == null || list.size < second.size)) {
+                    second = list;
+                }
+            }
+            int skipped = 0;
+            int from = 0; // probe position in second (both lists are ascending)
+            for (int i = 0; i < best.size; i++) {
+                int s = best.data[i];
+                if (second != null) {
+                    from = second.lowerBound(s, from);
+                    if (from == second.size) break;
+                    if (second.data[from] != s) continue;
+                }
+                Product p = slots[s];
+                if (p == null || !matches(p, needle)) continue; // stale or false positive
+                if (skipped++ < offset) continue;
+                page.add(p);
+                if (page.size() == limit) break;
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Case-insensitive prefix search: products whose ID starts with the prefix
+     * first, then products whose name starts with it (no duplicates).
+     *
+     * @param limit max number of results
+     */
+    public ArrayList<Product> searchByPrefix(String prefix, int limit) {
+        String p = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        ArrayList<Product> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            collectPrefix(idPrefix, p, limit, result);
+            collectPrefix(namePrefix, p, limit, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private static void collectPrefix(TreeMap<String, Product> map, String prefix, int limit,
+                                      ArrayList<Product> out) {
+        NavigableMap<String, Product> range = map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Product> e : range.entrySet()) {
+            if (out.size() >= limit) return;
+            if (!out.contains(e.getValue())) out.add(e.getValue());
+        }
+    }
+
+    // ---------------- helpers ----------------
+
+    private static boolean matches(Product p, String needle) {
+        return containsIgnoreCase(p.getProductID(), needle)
+                || containsIgnoreCase(p.getProductName(), needle);
+    }
+
+    // like text.toLowerCase().contains(needle) without allocating (needle is lower-case)
+    private static boolean containsIgnoreCase(String text, String needle) {
+        int last = text.length() - needle.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    private static String key(String text, Product p) {
+        return text.toLowerCase(Locale.ROOT) + '\0' + p.getProductID();
+    }
+
+    // distinct trigrams of ID and name
+    private static long[] trigrams(Product p) {
+        String id = p.getProductID().toLowerCase(Locale.ROOT);
+        String name = p.getProductName().toLowerCase(Locale.ROOT);
+        long[] g = new long[Math.max(0, id.length() - 2) + Math.max(0, name.length() - 2)];
+        int n = 0;
+        for (int i = 0; i + 3 <= id.length(); i++) g[n++] = gram(id, i);
+        for (int i = 0; i + 3 <= name.length(); i++) g[n++] = gram(name, i);
+        Arrays.sort(g, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || g[i] != g[distinct - 1]) g[distinct++] = g[i];
+        }
+        return Arrays.copyOf(g, distinct);
+    }
+
+    // three chars packed into one long key
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
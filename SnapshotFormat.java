@@ -0,0 +1,363 @@
+package coursework;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary snapshot format for the product catalog.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header   : int magic "SMKT", int version, long lastSeq, long activityMark,
+ *            int productCount, long indexOffset, long historyOffset (44 bytes)
+ * records  : productCount product records, in display order
+ *            str id, str name, int quantity, int lastUpdated (epoch day),
+ *            byte activityCapacity, byte activityCount, then per activity:
+ *            long activityID, byte type, int quantity, int date (epoch day)
+ * index    : productCount longs = record offsets, sorted by product ID
+ * history  : int productCount, then per product: str id, int n,
+ *            n ints epoch day, n ints quantity, n bytes type
+ * </pre>
+ * "str" is an int byte length followed by UTF-8 bytes.
+ * activityMark is the Activity ID reservation mark (see Activity.getReservedUpTo()).
+ * <p>
+ * Bytes of counts/capacities are unsigned. Other versions are rejected.
+ * <p>
+ * Files are read through a memory-mapped buffer, so loading is a single pass
+ * over the mapped pages without stream/serialization overhead. The ID-sorted
+ * index allows looking up one product without decoding the others.
+ * <p>
+ * Old data.dat files (Java serialization) are still readable; see isLegacy().
+ */
+public final class SnapshotFormat {
+
+    public static final int MAGIC = 0x534D4B54; // "SMKT"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 44;
+
+    private SnapshotFormat() { }
+
+    /** Header fields. */
+    private static final class Header {
+        long lastSeq;
+        long activityMark;
+        int count;
+        long indexOffset;
+        long historyOffset; // 0 = no history section
+    }
+
+    /** Decoded snapshot: products in display order plus header values. */
+    public static class Snapshot {
+        public final ArrayList<Product> products;
+        public final long lastSeq;
+        public final long activityMark;
+        public final ActivityHistory history; // null if the file has no history section
+
+        Snapshot(ArrayList<Product> products, long lastSeq, long activityMark, ActivityHistory history) {
+            this.products = products;
+            this.lastSeq = lastSeq;
+            this.activityMark = activityMark;
+            this.history = history;
+        }
+    }
+
+    // ---------------- writing ----------------
+
+    /**
+     * Encodes the catalog into the binary format.
+     *
+     * @param products     products in display order
+     * @param lastSeq      journal sequence number the snapshot covers
+     * @param activityMark Activity ID reservation mark
+     * @param history      full movement history, or null to write none
+     */
+    public static byte[] encode(Collection<Product> products, long lastSeq, long activityMark,
+                                ActivityHistory history) {
+        int n = products.size();
+        Product[] byId = new Product[n];
+        long[] offsets = new long[n];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + n * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastSeq);
+            out.writeLong(activityMark);
+            out.writeInt(n);
+            out.writeLong(0); // index offset, patched below
+            out.writeLong(0); // history offset, patched below
+
+            int i = 0;
+            for (Product p : products) {
+                byId[i] = p;
+                offsets[i] = out.size();
+                i++;
+                writeProduct(out, p);
+            }
+
+            // ID-sorted offset table
+            long indexOffset = out.size();
+            Integer[] order = new Integer[n];
+            for (int k = 0; k < n; k++) order[k] = k;
+            Arrays.sort(order, Comparator.comparing(k -> byId[k].getProductID()));
+            for (int k : order) out.writeLong(offsets[k]);
+
+            long historyOffset = 0;
+            if (history != null) {
+                historyOffset = out.size();
+                writeHistory(out, history);
+            }
+            out.flush();
+
+            byte[] image = bytes.toByteArray();
+            ByteBuffer.wrap(image).putLong(28, indexOffset).putLong(36, historyOffset);
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen for an in-memory stream
+        }
+    }
+
+    /** Writes one product record, also used by DeltaSegment. */
+    static void writeProduct(DataOutputStream out, Product p) throws IOException {
+        writeString(out, p.getProductID());
+        writeString(out, p.getProductName());
+        out.writeInt(p.getProductQuantity());
+        out.writeInt((int) p.getEntryDate().toEpochDay());
+        Activity[] acts = p.getActivitiesAsArray();
+        out.writeByte(p.getActivityCapacity());
+        out.writeByte(acts.length);
+        for (Activity a : acts) {
+            out.writeLong(a.getActivityNumber());
+            out.writeByte(a.getActivityType().code());
+            out.writeInt(a.getActivityQuantity());
+            out.writeInt(a.getEpochDay());
+        }
+    }
+
+    private static void writeHistory(DataOutputStream out, ActivityHistory history) throws IOException {
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<ActivityHistory.Columns> cols = new ArrayList<>();
+        history.forEach((id, c) -> { ids.add(id); cols.add(c); });
+        out.writeInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            ActivityHistory.Columns c = cols.get(i);
+            synchronized (c) {
+                writeString(out, ids.get(i));
+                out.writeInt(c.size);
+                for (int k = 0; k < c.size; k++) out.writeInt(c.days[k]);
+                for (int k = 0; k < c.size; k++) out.writeInt(c.quantities[k]);
+                out.write(c.types, 0, c.size);
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    // ---------------- reading ----------------
+
+    /** @return true if the file starts with the Java serialization stream magic (old data.dat) */
+    public static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == 0xACED;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a snapshot file, either in this binary format or the old
+     * serialized format (migration path).
+     */
+    public static Snapshot read(File file) throws IOException {
+        return read(file, pct -> { });
+    }
+
+    /**
+     * Same as read(File), reporting progress.
+     *
+     * @param progress receives 0..100 as product records are decoded
+     */
+    public static Snapshot read(File file, IntConsumer progress) throws IOException {
+        if (isLegacy(file)) return readLegacy(file);
+        return decode(map(file), file.getPath(), progress);
+    }
+
+    /**
+     * Decodes a snapshot image held in memory (e.g. one produced by encode and
+     * sent over the network). Only the binary format is accepted.
+     */
+    public static Snapshot decode(byte[] image) throws IOException {
+        return decode(ByteBuffer.wrap(image), "snapshot image", pct -> { });
+    }
+
+    /** @return the journal sequence number an encoded image covers */
+    static long lastSeq(byte[] image) {
+        return ByteBuffer.wrap(image).getLong(8);
+    }
+
+    // records that run past the end or hold impossible values fail with an IOException
+    private static Snapshot decode(ByteBuffer buf, String source, IntConsumer progress) throws IOException {
+        try {
+            return decodeRecords(buf, source, progress);
+        } catch (RuntimeException e) { // BufferUnderflowException, DateTimeException, bad capacity ...
+            throw new IOException("Corrupt snapshot: " + source, e);
+        }
+    }
+
+    private static Snapshot decodeRecords(ByteBuffer buf, String source, IntConsumer progress) throws IOException {
+        Header h = readHeader(buf, source);
+        int count = h.count;
+
+        ArrayList<Product> list = new ArrayList<>(count);
+        buf.position(HEADER_SIZE);
+        int step = Math.max(1, count / 100);
+        for (int i = 0; i < count; i++) {
+            list.add(readProduct(buf));
+            if (i % step == 0) progress.accept((int) (i * 100L / count));
+        }
+        ActivityHistory history = null;
+        if (h.historyOffset != 0) {
+            buf.position((int) h.historyOffset);
+            history = readHistory(buf);
+        }
+        return new Snapshot(list, h.lastSeq, h.activityMark, history);
+    }
+
+    private static ActivityHistory readHistory(ByteBuffer buf) {
+        ActivityHistory history = new ActivityHistory();
+        int products = buf.getInt();
+        for (int i = 0; i < products; i++) {
+            String id = readString(buf);
+            int n = buf.getInt();
+            int[] days = new int[n];
+            int[] qty = new int[n];
+            byte[] types = new byte[n];
+            buf.asIntBuffer().get(days);
+            buf.position(buf.position() + n * 4);
+            buf.asIntBuffer().get(qty);
+            buf.position(buf.position() + n * 4);
+            buf.get(types);
+            history.put(id, days, qty, types);
+        }
+        return history;
+    }
+
+    /**
+     * Finds one product by ID using the offset table (binary search),
+     * without decoding the rest of the file.
+     *
+     * @return the product, or null if it is not in the snapshot
+     */
+    public static Product lookup(File file, String productID) throws IOException {
+        try {
+            return lookup(map(file), file.getPath(), productID);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt snapshot: " + file, e);
+        }
+    }
+
+    private static Product lookup(ByteBuffer buf, String file, String productID) throws IOException {
+        Header h = readHeader(buf, file);
+        int indexOffset = (int) h.indexOffset;
+        int lo = 0, hi = h.count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            buf.position((int) buf.getLong(indexOffset + mid * 8));
+            int cmp = readString(buf).compareTo(productID);
+            if (cmp == 0) {
+                buf.position((int) buf.getLong(indexOffset + mid * 8));
+                return readProduct(buf);
+            }
+            if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+        }
+        return null;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    // validates magic/version and decodes the header
+    private static Header readHeader(ByteBuffer buf, String file) throws IOException {
+        if (buf.limit() < 8 || buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        int version = buf.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        if (buf.limit() < HEADER_SIZE) throw new IOException("Truncated snapshot header: " + file);
+        Header h = new Header();
+        h.lastSeq = buf.getLong(8);
+        h.activityMark = buf.getLong(16);
+        h.count = buf.getInt(24);
+        h.indexOffset = buf.getLong(28);
+        h.historyOffset = buf.getLong(36);
+        return h;
+    }
+
+    static Product readProduct(ByteBuffer buf) {
+        String id = readString(buf);
+        String name = readString(buf);
+        int qty = buf.getInt();
+        LocalDate updated = LocalDate.ofEpochDay(buf.getInt());
+        int capacity = buf.get() & 0xFF;
+        Product p = new Product(id, name, qty, updated, capacity);
+        int acts = buf.get() & 0xFF;
+        for (int a = 0; a < acts; a++) {
+            long actID = buf.getLong();
+            ActivityType type = ActivityType.fromCode(buf.get());
+            int actQty = buf.getInt();
+            p.addActivity(new Activity(actID, type, actQty, buf.getInt()));
+        }
+        return p;
+    }
+
+    static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Old format: ObjectOutputStream of ArrayList<Product>, optionally followed
+     * by the journal sequence number.
+     */
+    @SuppressWarnings("unchecked")
+    private static Snapshot readLegacy(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            ArrayList<Product> list = (ArrayList<Product>) in.readObject();
+            long seq;
+            try {
+                seq = in.readLong();
+            } catch (EOFException e) {
+                seq = 0; // written before journal mode existed
+            }
+            long maxActivity = 0;
+            for (Product p : list) {
+                for (Activity a : p.getActivitiesAsArray()) {
+                    maxActivity = Math.max(maxActivity, a.getActivityNumber());
+                }
+            }
+            return new Snapshot(list, seq, maxActivity + 1, null);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Corrupt legacy data file: " + file, e);
+        }
+    }
+}
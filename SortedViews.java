@@ -0,0 +1,139 @@
+package coursework;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary orderings of the catalog that are kept up to date incrementally.
+ * - by name     : case-insensitive name, then ID
+ * - by quantity : stock level (low -> high), then ID
+ * <p>
+ * Backed by concurrent skip lists, so every add/delete/stock change costs
+ * O(log n), tills do not block each other, and readers can page through or
+ * range-query either order without re-sorting anything.
+ * <p>
+ * The quantity order stores the stock value it was sorted by (Entry), so a
+ * product's position can be found and moved when its stock changes.
+ */
+public class SortedViews implements StockListener {
+
+    /** Position of a product in the quantity order. */
+    private static final class Entry {
+        final int quantity;
+        final Product product;
+
+        Entry(int quantity, Product product) {
+            this.quantity = quantity;
+            this.product = product;
+        }
+    }
+
+    /** The name order as a comparator (case-insensitive name, then ID). */
+    public static final Comparator<Product> BY_NAME =
+            Comparator.comparing(Product::getProductName, String.CASE_INSENSITIVE_ORDER)
+                      .thenComparing(Product::getProductID);
+
+    /** The quantity order as a comparator, on the products' current stock (then ID). */
+    public static final Comparator<Product> BY_STOCK =
+            Comparator.comparingInt(Product::getProductQuantity)
+                      .thenComparing(Product::getProductID);
+
+    // an Entry without product is a search probe that sorts before its quantity group
+    private static final Comparator<Entry> BY_QUANTITY = (a, b) -> {
+        int c = Integer.compare(a.quantity, b.quantity);
+        if (c != 0) return c;
+        if (a.product == null) return b.product == null ? 0 : -1;
+        if (b.product == null) return 1;
+        return a.product.getProductID().compareTo(b.product.getProductID());
+    };
+
+    private final ConcurrentSkipListSet<Product> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final ConcurrentSkipListSet<Entry> byQuantity = new ConcurrentSkipListSet<>(BY_QUANTITY);
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // ---------------- updates ----------------
+
+    /** Adds a product to both orders. */
+    public void add(Product p) {
+        byName.add(p);
+        Entry e = new Entry(p.getProductQuantity(), p);
+        Entry old = entries.put(p.getProductID(), e);
+        if (old != null) byQuantity.remove(old);
+        byQuantity.add(e);
+    }
+
+    /** Removes a product from both orders. */
+    public void remove(Product p) {
+        byName.remove(p);
+        Entry old = entries.remove(p.getProductID());
+        if (old != null) byQuantity.remove(old);
+    }
+
+    /** Drops everything (before a reload). */
+    public void clear() {
+        byName.clear();
+        byQuantity.clear();
+        entries.clear();
+    }
+
+    /** Moves the product to its new place in the quantity order. */
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        Entry old = entries.get(product.getProductID());
+        if (old == null || old.product != product) return; // not (or no longer) indexed
+        Entry e = new Entry(product.getProductQuantity(), product);
+        byQuantity.remove(old);
+        byQuantity.add(e);
+        entries.put(product.getProductID(), e);
+    }
+
+    // ---------------- queries ----------------
+
+    /**
+     * @param offset products to skip
+     * @param limit  max products returned
+     * @return a page of products ordered by name (A -> Z)
+     */
+    public ArrayList<Product> byName(int offset, int limit) {
+        ArrayList<Product> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Product> it = byName.iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) it.next();
+        while (it.hasNext() && page.size() < limit) page.add(it.next());
+        return page;
+    }
+
+    /**
+     * @param offset products to skip
+     * @param limit  max products returned
+     * @return a page of products ordered by quantity (low -> high)
+     */
+    public ArrayList<Product> byQuantity(int offset, int limit) {
+        ArrayList<Product> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Entry> it = byQuantity.iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++) it.next();
+        while (it.hasNext() && page.size() < limit) page.add(it.next().product);
+        return page;
+    }
+
+    /**
+     * Range query on the quantity order, O(log n + k).
+     *
+     * @param min   lowest quantity (inclusive)
+     * @param max   highest quantity (inclusive)
+     * @param limit max products returned
+     * @return products with min <= quantity <= max, low -> high
+     */
+    public ArrayList<Product> quantityBetween(int min, int max, int limit) {
+        ArrayList<Product> result = new ArrayList<>();
+        if (min > max) return result;
+        Entry from = new Entry(min, null);
+        for (Entry e : byQuantity.tailSet(from, true)) {
+            if (e.quantity > max || result.size() >= limit) break;
+            result.add(e.product);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package coursework;
+
+/**
+ * One line of a stock batch (e.g. a delivery manifest line).
+ * - ADD    : quantity is added to stock
+ * - REMOVE : quantity is removed from stock
+ * Immutable; create with StockChange.add(...) / StockChange.remove(...).
+ */
+public final class StockChange {
+
+    public enum Type { ADD, REMOVE }
+
+    private final String productID;
+    private final Type type;
+    private final int quantity;
+
+    private StockChange(String productID, Type type, int quantity) {
+        this.productID = productID;
+        this.type = type;
+        this.quantity = quantity;
+    }
+
+    /** @return a line that adds q items of the product */
+    public static StockChange add(String productID, int q) {
+        return new StockChange(productID, Type.ADD, q);
+    }
+
+    /** @return a line that removes q items of the product */
+    public static StockChange remove(String productID, int q) {
+        return new StockChange(productID, Type.REMOVE, q);
+    }
+
+    public String getProductID() { return productID; }
+
+    public Type getType() { return type; }
+
+    public int getQuantity() { return quantity; }
+
+    @Override
+    public String toString() {
+        return type + " " + quantity + " x " + productID;
+    }
+}
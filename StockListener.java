@@ -0,0 +1,19 @@
+package coursework;
+
+/**
+ * Callback for stock changes of a product.
+ * <p>
+ * Called by Product right after addQuantity/removeQuantity changed the stock,
+ * while the product is still locked, so calls for one product arrive in order.
+ * Implementations must be quick and must not call back into the product's
+ * mutators.
+ */
+public interface StockListener {
+
+    /**
+     * @param product     the product whose stock changed (already updated)
+     * @param oldQuantity stock before the change
+     * @param activity    the activity that was logged for the change
+     */
+    void stockChanged(Product product, int oldQuantity, Activity activity);
+}
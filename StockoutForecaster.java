@@ -0,0 +1,216 @@
+package coursework;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Consumption rate and stockout forecast of every product, kept live.
+ * <p>
+ * Rate: exponentially weighted moving average of the units removed per day
+ * (half-life HALF_LIFE_DAYS), with today counted as if it were over. Each
+ * product stores just the rate and the day it refers to:
+ * - removal on the same day : rate += alpha * q
+ * - removal on a later day  : rate = rate * (1 - alpha)^days + alpha * q
+ * - reading on a later day  : rate * (1 - alpha)^days (quiet days pull it down)
+ * so every update is O(1), whatever the history.
+ * <p>
+ * Forecast: days to stockout = quantity / rate. Products that sell are kept
+ * in an index ordered by their projected stockout day (whole days, computed
+ * at their last change; most sales do not move it, so the index is rarely
+ * touched). Quiet days only push a stockout later, so "runs out within N
+ * days" takes the index entries up to today + N (an O(log n) range) and
+ * re-checks just those; the catalog is never scanned.
+ */
+public class StockoutForecaster implements StockListener {
+
+    /** Days after which a day's sales count half as much. */
+    public static final double HALF_LIFE_DAYS = 7;
+
+    private static final double ALPHA = 1 - Math.pow(0.5, 1 / HALF_LIFE_DAYS);
+    private static final double KEEP = 1 - ALPHA;
+
+    /** Forecast of one product. */
+    public static final class Forecast {
+        private final String productID;
+        private final int quantity;
+        private final double dailyRate;
+        private final double daysLeft;
+
+        Forecast(String productID, int quantity, double dailyRate, double daysLeft) {
+            this.productID = productID;
+            this.quantity = quantity;
+            this.dailyRate = dailyRate;
+            this.daysLeft = daysLeft;
+        }
+
+        public String getProductID() { return productID; }
+
+        public int getQuantity() { return quantity; }
+
+        /** @return expected units removed per day */
+        public double getDailyRate() { return dailyRate; }
+
+        /** @return days until stock runs out at that rate (0 = out of stock) */
+        public double getDaysLeft() { return daysLeft; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d left, %.1f/day, out in %.1f days", productID, quantity, dailyRate, daysLeft);
+        }
+    }
+
+    // entry of the stockout index: projected stockout day (rounded down), ties by ID
+    private static final class Key {
+        final long day;
+        final String productID;
+
+        Key(long day, String productID) {
+            this.day = day;
+            this.productID = productID;
+        }
+    }
+
+    /** Rate of one product. Guarded by its monitor. */
+    private static final class Rate {
+        double rate;   // units per day, as of day
+        int day;       // epoch day the rate refers to
+        Key key;       // current index entry, null if not indexed
+
+        // rate as of a later (or the same) day
+        double at(int today) {
+            return today <= day ? rate : rate * Math.pow(KEEP, today - day);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Rate> rates = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Key> byStockout = new ConcurrentSkipListSet<>(
+            Comparator.<Key>comparingLong(k -> k.day).thenComparing(k -> k.productID));
+
+    // ---------------- updates ----------------
+
+    @Override
+    public void stockChanged(Product product, int oldQuantity, Activity activity) {
+        record(product, activity.getActivityType(), activity.getActivityQuantity(), activity.getEpochDay());
+    }
+
+    /**
+     * Adds one movement and re-indexes the product with its current quantity.
+     *
+     * @param type kind of movement
+     */
+    void record(Product product, ActivityType type, int quantity, int epochDay) {
+        String id = product.getProductID();
+        Rate r = type == ActivityType.REMOVE_FROM_STOCK
+                ? rates.computeIfAbsent(id, k -> new Rate())
+                : rates.get(id);
+        if (r == null) return; // never sold: no forecast
+        synchronized (r) {
+            if (type == ActivityType.REMOVE_FROM_STOCK) {
+                if (r.rate == 0 || epochDay > r.day) {
+                    r.rate = r.at(epochDay) + ALPHA * quantity;
+                    r.day = epochDay;
+                } else {
+                    // same day, or an older day (replay): weigh by its age
+                    r.rate += ALPHA * quantity * Math.pow(KEEP, r.day - epochDay);
+                }
+            }
+            reindex(id, r, product.getProductQuantity());
+        }
+    }
+
+    // move the product's index entry to its new projected stockout day (caller holds r)
+    private void reindex(String id, Rate r, int quantity) {
+        long day = r.rate > 0 ? (long) Math.min(r.day + quantity / r.rate, Long.MAX_VALUE / 2) : -1;
+        if (r.key != null && r.key.day == day) return; // same day: index unchanged
+        if (r.key != null) byStockout.remove(r.key);
+        r.key = day >= 0 ? new Key(day, id) : null;
+        if (r.key != null) byStockout.add(r.key);
+    }
+
+    /** Forgets a product (deleted from the catalog). */
+    public void remove(String productID) {
+        Rate r = rates.remove(productID);
+        if (r == null) return;
+        synchronized (r) {
+            if (r.key != null) byStockout.remove(r.key);
+            r.key = null;
+        }
+    }
+
+    /** Drops everything (before a reload). */
+    public void clear() {
+        rates.clear();
+        byStockout.clear();
+    }
+
+    /**
+     * Rebuilds rates from saved movement history.
+     *
+     * @param products current product by ID (null = deleted, skipped)
+     */
+    void addAll(ActivityHistory history, Function<String, Product> products) {
+        history.forEach((id, c) -> {
+            Product p = products.apply(id);
+            if (p == null) return;
+            byte removed = ActivityType.REMOVE_FROM_STOCK.code();
+            synchronized (c) {
+                for (int i = 0; i < c.size; i++) {
+                    if (c.types[i] == removed) {
+                        record(p, ActivityType.REMOVE_FROM_STOCK, c.quantities[i], c.days[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    // ---------------- queries ----------------
+
+    /** @return expected units removed per day (0 if never sold) */
+    public double dailyRate(String productID) {
+        Rate r = rates.get(productID);
+        if (r == null) return 0;
+        synchronized (r) {
+            return r.at(EpochDays.today());
+        }
+    }
+
+    /**
+     * @return days until the product runs out at its current rate,
+     *         Double.POSITIVE_INFINITY if it does not sell
+     */
+    public double daysToStockout(Product p) {
+        double rate = dailyRate(p.getProductID());
+        return rate > 0 ? p.getProductQuantity() / rate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Products that run out within the given number of days at their current
+     * rate, soonest first (out-of-stock products that still sell first).
+     *
+     * @param products current product by ID
+     */
+    public List<Forecast> runningOutWithin(double days, Function<String, Product> products) {
+        int today = EpochDays.today();
+        List<Forecast> result = new ArrayList<>();
+        long last = (long) Math.floor(Math.min(today + days, Long.MAX_VALUE / 2));
+        for (Key k : byStockout.headSet(new Key(last, "\uffff"), true)) {
+            Product p = products.apply(k.productID);
+            Rate r = rates.get(k.productID);
+            if (p == null || r == null) continue;
+            double rate;
+            synchronized (r) {
+                rate = r.at(today);
+            }
+            if (rate <= 0) continue;
+            int qty = p.getProductQuantity();
+            double left = qty / rate;
+            if (left <= days) result.add(new Forecast(k.productID, qty, rate, left));
+        }
+        result.sort(Comparator.comparingDouble(Forecast::getDaysLeft).thenComparing(Forecast::getProductID));
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package coursework;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar.
+ * Same command line as the standard JMH runner, but results are written as
+ * JSON to jmh-result.json unless -rf / -rff say otherwise, so every run leaves
+ * a machine-readable file that can be compared with an earlier one.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp()) {
+            cmd.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) opts.resultFormat(ResultFormatType.JSON);
+        if (!cmd.getResult().hasValue()) opts.result("jmh-result.json");
+        Runner runner = new Runner(opts.build());
+        if (cmd.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,60 @@
+package coursework;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Catalog-wide operations at 10k, 100k and 1M products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class CatalogBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int products;
+
+    private ProductManager manager;
+    private String[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        manager = Catalogs.build(products);
+        ids = Catalogs.shuffledIds(products);
+    }
+
+    @Benchmark
+    public Product getProduct() {
+        String id = ids[next];
+        next = next + 1 == ids.length ? 0 : next + 1;
+        return manager.getProduct(id);
+    }
+
+    /** Selective query: a few hundred matches at most. */
+    @Benchmark
+    public ArrayList<Product> searchSelective() {
+        return manager.searchByIdOrName("honey tea");
+    }
+
+    /** Broad query: matches about 1/12 of the catalog. */
+    @Benchmark
+    public ArrayList<Product> searchBroad() {
+        return manager.searchByIdOrName("milk");
+    }
+
+    @Benchmark
+    public ArrayList<Product> sortByNameAsc() {
+        return manager.sortByNameAsc();
+    }
+
+    @Benchmark
+    public ArrayList<Product> sortByQuantityAsc() {
+        return manager.sortByQuantityAsc();
+    }
+}
@@ -0,0 +1,42 @@
+package coursework;
+
+import java.util.Random;
+
+/**
+ * Shared test data: a catalog of n products with realistic-ish names.
+ */
+final class Catalogs {
+
+    private static final String[] WORDS = {
+        "Apple", "Banana", "Bread", "Butter", "Cheese", "Chicken", "Coffee", "Cola",
+        "Eggs", "Flour", "Honey", "Juice", "Milk", "Oats", "Pasta", "Rice",
+        "Salt", "Soap", "Sugar", "Tea", "Tomato", "Tuna", "Water", "Yogurt"
+    };
+
+    private Catalogs() { }
+
+    /** @return a manager with products P0..P(n-1), quantities 0..999 */
+    static ProductManager build(int n) {
+        ProductManager m = new ProductManager();
+        Random rnd = new Random(42);
+        for (int i = 0; i < n; i++) {
+            String name = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)] + " " + i;
+            m.addProduct(new Product("P" + i, name, rnd.nextInt(1000)));
+        }
+        return m;
+    }
+
+    /** @return IDs in a shuffled order, for lookups that do not walk memory sequentially */
+    static String[] shuffledIds(int n) {
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) ids[i] = "P" + i;
+        Random rnd = new Random(7);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            String t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,54 @@
+package coursework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full snapshot save and load at 10k, 100k and 1M products.
+ * Each call is one cold operation, so this uses single-shot timing.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int products;
+
+    private ProductManager manager;
+    private File saved;
+    private File scratch;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        manager = Catalogs.build(products);
+        saved = File.createTempFile("bench-load", ".dat");
+        scratch = File.createTempFile("bench-save", ".dat");
+        if (!manager.saveToFile(saved.getPath())) throw new IOException("Could not write " + saved);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(saved.toPath());
+        Files.deleteIfExists(scratch.toPath());
+    }
+
+    @Benchmark
+    public boolean saveToFile() {
+        return manager.saveToFile(scratch.getPath());
+    }
+
+    @Benchmark
+    public ProductManager loadFromFile() {
+        ProductManager m = new ProductManager();
+        m.loadFromFile(saved.getPath());
+        return m;
+    }
+}
@@ -0,0 +1,46 @@
+package coursework;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Stock movements on a single product: the per-checkout hot path.
+ * "managed" variants go through ProductManager (locks, views, history, ...).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductBenchmark {
+
+    private Product product;
+    private ProductManager manager;
+
+    // fresh state per iteration so quantities and histories stay bounded
+    @Setup(Level.Iteration)
+    public void setup() {
+        product = new Product("P1", "Milk", 1_000_000);
+        manager = new ProductManager();
+        manager.addProduct(new Product("P1", "Milk", 1_000_000));
+    }
+
+    @Benchmark
+    public void addQuantity() {
+        product.addQuantity(1);
+    }
+
+    @Benchmark
+    public boolean addThenRemoveQuantity() {
+        product.addQuantity(1);
+        return product.removeQuantity(1);
+    }
+
+    @Benchmark
+    public boolean managedAddThenRemove() {
+        manager.addToStock("P1", 1);
+        return manager.removeFromStock("P1", 1);
+    }
+}
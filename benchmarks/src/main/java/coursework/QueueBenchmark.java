@@ -0,0 +1,96 @@
+package coursework;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Recent-activity rings: Queue (power-of-two mask) and the previous
+ * "% capacity" Queue as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueueBenchmark {
+
+    /** The Queue implementation before mask indexing, kept for comparison. */
+    static final class ModuloQueue<T> {
+        private final T[] data;
+        private int front;
+        private int rear = -1;
+        private int size;
+        private final int capacity;
+
+        @SuppressWarnings("unchecked")
+        ModuloQueue(int capacity) {
+            this.capacity = capacity;
+            this.data = (T[]) new Object[capacity];
+        }
+
+        void enqueue(T item) {
+            if (size == capacity) {
+                front = (front + 1) % capacity;
+                size--;
+            }
+            rear = (rear + 1) % capacity;
+            data[rear] = item;
+            size++;
+        }
+
+        T[] toArray(T[] a) {
+            if (a.length < size) a = java.util.Arrays.copyOf(a, size);
+            for (int i = 0; i < size; i++) a[i] = data[(front + i) % capacity];
+            return a;
+        }
+    }
+
+    @Param({"4", "16"})
+    int capacity;
+
+    private Queue<Activity> queue;
+    private ModuloQueue<Activity> modulo;
+    private Activity activity;
+    private Activity[] buffer;
+
+    @Setup
+    public void setup() {
+        queue = new Queue<>(capacity);
+        modulo = new ModuloQueue<>(capacity);
+        activity = new Activity(ActivityType.ADD_TO_STOCK, 1);
+        buffer = new Activity[capacity];
+        for (int i = 0; i < capacity; i++) {
+            queue.enqueue(activity);
+            modulo.enqueue(activity);
+        }
+    }
+
+    @Benchmark
+    public Queue<Activity> queueEnqueue() {
+        queue.enqueue(activity);
+        return queue;
+    }
+
+    @Benchmark
+    public ModuloQueue<Activity> moduloEnqueue() {
+        modulo.enqueue(activity);
+        return modulo;
+    }
+
+    @Benchmark
+    public Activity[] queueToArray() {
+        return queue.toArray(new Activity[0]);
+    }
+
+    @Benchmark
+    public Activity[] moduloToArray() {
+        return modulo.toArray(new Activity[0]);
+    }
+
+    @Benchmark
+    public int queueCopyTo() {
+        return queue.copyTo(buffer);
+    }
+}
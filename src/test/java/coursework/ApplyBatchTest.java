@@ -0,0 +1,89 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** A batch is applied as a whole or not at all, and says which lines made it fail. */
+class ApplyBatchTest {
+
+    private static ProductManager manager() {
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.addProduct(new Product("A", "Apples", 10)));
+        assertTrue(manager.addProduct(new Product("B", "Bread", 5)));
+        return manager;
+    }
+
+    private static BatchResult.Status[] statuses(BatchResult result) {
+        return result.getLines().stream().map(BatchResult.Line::getStatus).toArray(BatchResult.Status[]::new);
+    }
+
+    @Test
+    void validBatchIsApplied() {
+        ProductManager manager = manager();
+        BatchResult result = manager.applyBatch(Arrays.asList(
+                StockChange.add("A", 5), StockChange.remove("A", 15), StockChange.remove("B", 5)));
+
+        assertTrue(result.isApplied());
+        assertEquals(0, result.getFailureCount());
+        for (BatchResult.Status s : statuses(result)) assertEquals(BatchResult.Status.APPLIED, s);
+        assertEquals(0, manager.getProduct("A").getProductQuantity());
+        assertEquals(0, manager.getProduct("B").getProductQuantity());
+        assertEquals(2, manager.getProduct("A").getActivitiesAsArray().length);
+    }
+
+    @Test
+    void failingLineRollsBackTheWholeBatch() {
+        ProductManager manager = manager();
+        List<StockChange> changes = Arrays.asList(
+                StockChange.add("A", 5),       // fine
+                StockChange.remove("B", 3),    // fine, leaves 2
+                StockChange.remove("B", 3),    // only 2 left at this point
+                StockChange.add("NONE", 1),
+                StockChange.add("A", -1),
+                StockChange.remove("A", 15));  // fine: 10 + 5 projected
+        BatchResult result = manager.applyBatch(changes);
+
+        assertFalse(result.isApplied());
+        assertFalse(result.isSaved());
+        assertEquals(3, result.getFailureCount());
+        assertEquals(Arrays.asList(
+                BatchResult.Status.VALID,
+                BatchResult.Status.VALID,
+                BatchResult.Status.INSUFFICIENT_STOCK,
+                BatchResult.Status.UNKNOWN_PRODUCT,
+                BatchResult.Status.INVALID_QUANTITY,
+                BatchResult.Status.VALID), Arrays.asList(statuses(result)));
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(i, result.getLines().get(i).getLineNumber());
+            assertEquals(changes.get(i), result.getLines().get(i).getChange());
+        }
+
+        // nothing applied, not even the valid lines
+        assertEquals(10, manager.getProduct("A").getProductQuantity());
+        assertEquals(5, manager.getProduct("B").getProductQuantity());
+        assertEquals(0, manager.getProduct("A").getActivitiesAsArray().length);
+        assertEquals(0, manager.getProduct("B").getActivitiesAsArray().length);
+    }
+
+    @Test
+    void stockOverflowFailsTheLine() {
+        ProductManager manager = manager();
+        BatchResult result = manager.applyBatch(Arrays.asList(
+                StockChange.add("A", Integer.MAX_VALUE - 20),
+                StockChange.add("A", 11),
+                StockChange.add("B", 1)));
+
+        assertFalse(result.isApplied());
+        assertEquals(Arrays.asList(
+                BatchResult.Status.VALID,
+                BatchResult.Status.STOCK_OVERFLOW,
+                BatchResult.Status.VALID), Arrays.asList(statuses(result)));
+        assertEquals(10, manager.getProduct("A").getProductQuantity());
+    }
+}
@@ -0,0 +1,84 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/** A snapshot sees the catalog between two batches, and keeps seeing it while batches go on. */
+class CatalogSnapshotTest {
+
+    private static final int PRODUCTS = 20;
+    private static final int UNITS = 1000;
+
+    private static int[] quantities(CatalogSnapshot view) {
+        int[] q = new int[view.size()];
+        for (int i = 0; i < q.length; i++) q[i] = view.getQuantity(i);
+        return q;
+    }
+
+    @Test
+    void totalsStayFixedWhileTransferBatchesRun() throws Exception {
+        ProductManager manager = new ProductManager();
+        for (int i = 0; i < PRODUCTS; i++) assertTrue(manager.addProduct(new Product("P" + i, "Item " + i, UNITS)));
+        long total = (long) PRODUCTS * UNITS;
+
+        // every batch moves units from one product to another: the catalog total never changes
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int seed = w;
+            workers.add(pool.submit(() -> {
+                Random rnd = new Random(seed);
+                int applied = 0;
+                while (!stop.get()) {
+                    String from = "P" + rnd.nextInt(PRODUCTS);
+                    String to = "P" + rnd.nextInt(PRODUCTS);
+                    int units = 1 + rnd.nextInt(50);
+                    BatchResult r = manager.applyBatch(Arrays.asList(StockChange.remove(from, units),
+                                                                     StockChange.add(to, units)));
+                    if (r.isApplied()) applied++;
+                }
+                return applied;
+            }));
+        }
+
+        try {
+            for (int round = 0; round < 200; round++) {
+                try (CatalogSnapshot view = manager.snapshot()) {
+                    assertEquals(PRODUCTS, view.size());
+                    assertEquals(total, view.getTotalStockUnits());
+                    int[] first = quantities(view);
+                    assertEquals(total, Arrays.stream(first).asLongStream().sum());
+
+                    Thread.yield(); // let the batches move stock under the open view
+                    assertEquals(total, view.getTotalStockUnits());
+                    assertArrayEquals(first, quantities(view));
+                }
+            }
+        } finally {
+            stop.set(true);
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        int applied = 0;
+        for (Future<Integer> f : workers) applied += f.get();
+        assertTrue(applied > 0);
+        long live = 0;
+        for (Product p : manager.getAllProducts()) live += p.getProductQuantity();
+        assertEquals(total, live);
+    }
+}
@@ -0,0 +1,124 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Saves after the first one write delta segments; a load applies the chain up to the first bad one. */
+class CheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    // everything a reload has to bring back, one line per product in display order
+    private static String dump(ProductManager m) {
+        StringBuilder sb = new StringBuilder();
+        for (Product p : m.getAllProducts()) {
+            sb.append(p.getProductID()).append('|').append(p.getProductName()).append('|')
+              .append(p.getProductQuantity()).append('|').append(p.getEntryDate()).append('|');
+            for (Activity a : p.getActivitiesAsArray()) sb.append(a.getActivityID()).append(',');
+            sb.append('|').append(m.getHistory(p.getProductID(), null, LocalDate.MIN, LocalDate.MAX).size())
+              .append('\n');
+        }
+        return sb.toString();
+    }
+
+    private File[] deltas() {
+        File[] files = dir.toFile().listFiles((d, name) -> name.contains(".delta.") && !name.endsWith(".bad"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    private ProductManager catalog(String file) {
+        ProductManager manager = new ProductManager();
+        for (int i = 0; i < 50; i++) assertTrue(manager.addProduct(new Product("P" + i, "Item " + i, 100)));
+        manager.enableCheckpoints(file);
+        assertTrue(manager.saveToFile(file)); // full base
+        return manager;
+    }
+
+    private static ProductManager load(String file) {
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.loadFromFile(file));
+        return manager;
+    }
+
+    @Test
+    void reloadAppliesEveryDelta() {
+        String file = dir.resolve("data.dat").toString();
+        ProductManager manager = catalog(file);
+        for (int round = 0; round < 3; round++) {
+            for (int i = round; i < 50; i += 5) assertTrue(manager.removeFromStock("P" + i, 1 + round));
+            assertTrue(manager.addToStock("P" + (40 + round), 7));
+            assertTrue(manager.addProduct(new Product("N" + round, "New " + round, round)));
+            assertTrue(manager.saveToFile(file));
+        }
+        assertEquals(3, deltas().length);
+
+        assertTrue(manager.saveToFile(file)); // nothing changed: no new segment
+        assertEquals(3, deltas().length);
+
+        assertEquals(dump(manager), dump(load(file)));
+    }
+
+    @Test
+    void deleteThenReAddOfTheSameId() {
+        String file = dir.resolve("data.dat").toString();
+        ProductManager manager = catalog(file);
+        assertTrue(manager.removeFromStock("P7", 30));
+        assertTrue(manager.deleteProduct("P7"));
+        assertTrue(manager.saveToFile(file));
+        assertNull(load(file).getProduct("P7"));
+
+        assertTrue(manager.addProduct(new Product("P7", "Seven again", 3)));
+        assertTrue(manager.addToStock("P7", 2));
+        assertTrue(manager.saveToFile(file));
+        assertEquals(2, deltas().length);
+
+        ProductManager reloaded = load(file);
+        assertEquals(dump(manager), dump(reloaded));
+        assertEquals("Seven again", reloaded.getProduct("P7").getProductName());
+        assertEquals(5, reloaded.getProduct("P7").getProductQuantity());
+        assertEquals("P7", reloaded.getAllProducts().get(reloaded.size() - 1).getProductID());
+    }
+
+    @Test
+    void corruptLastDeltaEndsTheChainAndIsSetAside() throws Exception {
+        String file = dir.resolve("data.dat").toString();
+        ProductManager manager = catalog(file);
+        assertTrue(manager.removeFromStock("P1", 10));
+        assertTrue(manager.saveToFile(file));
+        String beforeLast = dump(manager);
+        assertTrue(manager.removeFromStock("P2", 20));
+        assertTrue(manager.addProduct(new Product("LATE", "Late", 1)));
+        assertTrue(manager.saveToFile(file));
+
+        File[] deltas = deltas();
+        assertEquals(2, deltas.length);
+        File last = deltas[1];
+        try (RandomAccessFile raf = new RandomAccessFile(last, "rw")) {
+            long at = raf.length() / 2;
+            raf.seek(at);
+            int b = raf.read();
+            raf.seek(at);
+            raf.write(b ^ 0x55);
+        }
+
+        ProductManager reloaded = load(file);
+        assertEquals(beforeLast, dump(reloaded));
+        assertNull(reloaded.getProduct("LATE"));
+        assertFalse(last.exists());
+        assertTrue(new File(last.getPath() + ".bad").exists());
+        assertEquals(1, deltas().length);
+    }
+}
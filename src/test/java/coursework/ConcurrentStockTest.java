@@ -0,0 +1,113 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Many tills adding and removing stock on a few shared products at once:
+ * no update may be lost and stock may never go negative.
+ */
+class ConcurrentStockTest {
+
+    private static final int PRODUCTS = 8;
+    private static final int THREADS = 8;
+    private static final int OPS_PER_THREAD = 20_000;
+    private static final int INITIAL = 50;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAddsAndRemovesLoseNothingAndNeverGoNegative() throws Exception {
+        ProductManager manager = newStore();
+
+        long[] expected = hammer(manager);
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            assertEquals(expected[i], manager.getProduct("P" + i).getProductQuantity(), "P" + i);
+        }
+    }
+
+    @Test
+    void journalReplayGivesTheSameState() throws Exception {
+        String file = dir.resolve("data.dat").toString();
+        ProductManager manager = newStore();
+        assertTrue(manager.saveToFile(file));
+        manager.enableJournal(file);
+
+        long[] expected = hammer(manager);
+        assertTrue(manager.saveToFile(file)); // syncs the journal
+        manager.closeJournal();
+
+        ProductManager replayed = new ProductManager();
+        assertTrue(replayed.loadFromFile(file));
+        assertEquals(PRODUCTS, replayed.size());
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product p = replayed.getProduct("P" + i);
+            assertNotNull(p, "P" + i);
+            assertEquals(expected[i], p.getProductQuantity(), "P" + i);
+            assertEquals(manager.getProduct("P" + i).getProductQuantity(), p.getProductQuantity(), "P" + i);
+        }
+    }
+
+    private static ProductManager newStore() {
+        ProductManager manager = new ProductManager();
+        for (int i = 0; i < PRODUCTS; i++) {
+            assertTrue(manager.addProduct(new Product("P" + i, "Product " + i, INITIAL, LocalDate.now())));
+        }
+        return manager;
+    }
+
+    // random adds/removes from all threads, started together
+    // @return expected final quantity per product (initial + successful adds - successful removes)
+    private static long[] hammer(ProductManager manager) throws Exception {
+        AtomicLongArray net = new AtomicLongArray(PRODUCTS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            done.add(pool.submit(() -> {
+                Random rnd = new Random(seed);
+                start.await();
+                for (int k = 0; k < OPS_PER_THREAD; k++) {
+                    int i = rnd.nextInt(PRODUCTS);
+                    String id = "P" + i;
+                    int q = 1 + rnd.nextInt(5);
+                    if (rnd.nextBoolean()) {
+                        assertTrue(manager.addToStock(id, q));
+                        net.addAndGet(i, q);
+                    } else if (manager.removeFromStock(id, q)) {
+                        net.addAndGet(i, -q);
+                    }
+                    assertTrue(manager.getProduct(id).getProductQuantity() >= 0, id + " below zero");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : done) f.get(); // rethrows assertion failures from the workers
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        long[] expected = new long[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) expected[i] = INITIAL + net.get(i);
+        return expected;
+    }
+}
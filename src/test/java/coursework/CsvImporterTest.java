@@ -0,0 +1,48 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** An import of many batches tells catalog listeners once, and shows up in the metrics. */
+class CsvImporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void oneCatalogReloadPerImport() throws Exception {
+        int rows = CsvImporter.BATCH_SIZE * 5 + 7;
+        StringBuilder csv = new StringBuilder("id,name,quantity\n");
+        for (int i = 0; i < rows; i++) csv.append('P').append(i).append(",Product ").append(i).append(",3\n");
+        csv.append("P0,Duplicate,1\n");
+        Path file = dir.resolve("catalog.csv");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        ProductManager manager = new ProductManager();
+        AtomicInteger reloads = new AtomicInteger();
+        manager.addCatalogListener(new CatalogListener() {
+            @Override public void productAdded(Product p) { }
+            @Override public void productRemoved(Product p) { }
+            @Override public void catalogReloaded() { reloads.incrementAndGet(); }
+        });
+
+        ImportResult result = new CsvImporter(manager, 2).importFile(file, null);
+        assertNotNull(result);
+        assertEquals(rows, result.getImported());
+        assertEquals(1, result.getDuplicateCount());
+        assertEquals(rows, manager.size());
+        assertEquals(1, reloads.get());
+
+        ProductManagerMetrics metrics = manager.getMetrics();
+        assertEquals(rows, metrics.getProductsImported());
+        assertEquals(1, metrics.latency(ProductManagerMetrics.Op.IMPORT).count());
+    }
+}
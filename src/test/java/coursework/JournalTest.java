@@ -0,0 +1,114 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Journal replay rebuilds products exactly as they were added, and survives a torn tail. */
+class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayKeepsActivityCapacity() throws Exception {
+        String file = dir.resolve("data.dat").toString();
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.saveToFile(file));
+        manager.enableJournal(file);
+        assertTrue(manager.addProduct(new Product("BIG", "Keeps ten", 0, LocalDate.now(), 10)));
+        assertTrue(manager.addProduct(new Product("STD", "Default", 0, LocalDate.now())));
+        for (int i = 0; i < 12; i++) assertTrue(manager.addToStock("BIG", 1));
+        assertTrue(manager.saveToFile(file));
+        manager.closeJournal();
+
+        ProductManager replayed = new ProductManager();
+        assertTrue(replayed.loadFromFile(file));
+        Product big = replayed.getProduct("BIG");
+        assertNotNull(big);
+        assertEquals(10, big.getActivityCapacity());
+        assertEquals(12, big.getProductQuantity());
+        assertEquals(Product.DEFAULT_ACTIVITY_CAPACITY, replayed.getProduct("STD").getActivityCapacity());
+    }
+
+    @Test
+    void capacityChangeIsJournaled() throws Exception {
+        String file = dir.resolve("cap.dat").toString();
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.addProduct(new Product("A", "Apples", 0, LocalDate.now())));
+        assertTrue(manager.saveToFile(file));
+        manager.enableJournal(file);
+        assertTrue(manager.setActivityCapacity("A", 12));
+        assertFalse(manager.setActivityCapacity("NONE", 12));
+        for (int i = 0; i < 20; i++) assertTrue(manager.addToStock("A", 1));
+        assertTrue(manager.saveToFile(file));
+        manager.closeJournal();
+
+        ProductManager replayed = new ProductManager();
+        assertTrue(replayed.loadFromFile(file));
+        assertEquals(12, replayed.getProduct("A").getActivityCapacity());
+        assertEquals(12, replayed.getProduct("A").getActivitiesAsArray().length);
+    }
+
+    @Test
+    void tornTailIsCutOffBeforeAppending() throws Exception {
+        String file = dir.resolve("torn.dat").toString();
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.saveToFile(file));
+        manager.enableJournal(file);
+        assertTrue(manager.addProduct(new Product("A", "Apples", 10, LocalDate.now())));
+        assertTrue(manager.addToStock("A", 5));
+        assertTrue(manager.addToStock("A", 7)); // the record torn below
+        assertTrue(manager.saveToFile(file));
+        manager.closeJournal();
+
+        File journal = new File(file + ".journal");
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.setLength(raf.length() - 3); // crash in the middle of the last append
+        }
+
+        ProductManager restarted = new ProductManager();
+        assertTrue(restarted.loadFromFile(file));
+        assertEquals(15, restarted.getProduct("A").getProductQuantity());
+        restarted.enableJournal(file);
+        assertTrue(restarted.addToStock("A", 1));
+        assertTrue(restarted.addProduct(new Product("B", "Bananas", 3, LocalDate.now())));
+        assertTrue(restarted.saveToFile(file));
+        restarted.closeJournal();
+
+        ProductManager again = new ProductManager();
+        assertTrue(again.loadFromFile(file));
+        assertEquals(16, again.getProduct("A").getProductQuantity());
+        assertEquals(3, again.getProduct("B").getProductQuantity());
+    }
+
+    @Test
+    void corruptRecordFailsTheLoadInsteadOfThrowing() throws Exception {
+        String file = dir.resolve("bad.dat").toString();
+        ProductManager manager = new ProductManager();
+        assertTrue(manager.saveToFile(file));
+        manager.enableJournal(file);
+        assertTrue(manager.addProduct(new Product("A", "Apples", 10, LocalDate.now())));
+        assertTrue(manager.addToStock("A", 5));
+        assertTrue(manager.saveToFile(file));
+        manager.closeJournal();
+
+        try (RandomAccessFile raf = new RandomAccessFile(new File(file + ".journal"), "rw")) {
+            raf.seek(Journal.HEADER_SIZE + 8);
+            raf.write(99); // op of the first record
+        }
+        ProductManager broken = new ProductManager();
+        assertFalse(broken.loadFromFile(file));
+        assertNull(broken.getProduct("A"));
+    }
+}
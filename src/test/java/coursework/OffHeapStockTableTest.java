@@ -0,0 +1,51 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** Activity ring of an off-heap slot: order, wrap-around, no spill into neighbours. */
+class OffHeapStockTableTest {
+
+    private static long[] ids(Activity[] activities) {
+        long[] ids = new long[activities.length];
+        for (int i = 0; i < activities.length; i++) ids[i] = activities[i].getActivityNumber();
+        return ids;
+    }
+
+    @Test
+    void ringKeepsTheNewestActivitiesInOrder() {
+        OffHeapStockTable table = new OffHeapStockTable();
+        int slot = table.allocate();
+        for (long id = 1; id <= 3; id++) table.addActivity(slot, new Activity(id, ActivityType.ADD_TO_STOCK, 1, 0));
+        assertArrayEquals(new long[] {1, 2, 3}, ids(table.activities(slot)));
+
+        for (long id = 4; id <= 1000; id++) {
+            table.addActivity(slot, new Activity(id, ActivityType.ADD_TO_STOCK, 1, 0));
+            assertEquals(OffHeapStockTable.RING, table.activityCount(slot));
+        }
+        assertArrayEquals(new long[] {997, 998, 999, 1000}, ids(table.activities(slot)));
+    }
+
+    @Test
+    void neighbouringSlotsAreUntouched() {
+        OffHeapStockTable table = new OffHeapStockTable();
+        int before = table.allocate();
+        int slot = table.allocate();
+        int after = table.allocate();
+        table.setQuantity(before, 7);
+        table.setQuantity(after, 9);
+        for (long id = 1; id <= 10_000; id++) table.addActivity(slot, new Activity(id, ActivityType.REMOVE_FROM_STOCK, 1, 0));
+        assertEquals(7, table.quantity(before));
+        assertEquals(9, table.quantity(after));
+        assertEquals(0, table.activityCount(before));
+        assertEquals(0, table.activityCount(after));
+
+        table.free(slot); // reused slot starts empty
+        int reused = table.allocate();
+        assertEquals(slot, reused);
+        assertEquals(0, table.activityCount(reused));
+        assertEquals(0, table.quantity(reused));
+    }
+}
@@ -0,0 +1,60 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A replica that reconnects further behind than its send queue holds (but
+ * still inside the primary's backlog) must catch up, via a snapshot.
+ */
+class ReplicationCatchUpTest {
+
+    private static final int PRODUCTS = 10;
+
+    @Test
+    void replicaFarBehindCatchesUp() throws Exception {
+        ProductManager primaryStore = new ProductManager();
+        for (int i = 0; i < PRODUCTS; i++) {
+            primaryStore.addProduct(new Product("P" + i, "Product " + i, 0, LocalDate.now()));
+        }
+        ProductManager replicaStore = new ProductManager();
+        try (ReplicationPrimary primary = new ReplicationPrimary(primaryStore, 0)) {
+            primary.start();
+
+            Replica first = new Replica(replicaStore, "localhost", primary.getPort());
+            first.start();
+            awaitSync(replicaStore, primaryStore);
+            first.close();
+
+            // one frame per mutation: more than a replica queue, less than the backlog
+            int mutations = ReplicationPrimary.REPLICA_QUEUE + 20_000;
+            for (int k = 0; k < mutations; k++) primaryStore.addToStock("P" + (k % PRODUCTS), 1);
+            assertTrue(replicaStore.getLastSeq() < primaryStore.getLastSeq() - ReplicationPrimary.REPLICA_QUEUE);
+
+            Replica again = new Replica(replicaStore, "localhost", primary.getPort());
+            again.start();
+            try {
+                awaitSync(replicaStore, primaryStore);
+            } finally {
+                again.close();
+            }
+        }
+        for (int i = 0; i < PRODUCTS; i++) {
+            assertEquals(primaryStore.getProduct("P" + i).getProductQuantity(),
+                         replicaStore.getProduct("P" + i).getProductQuantity(), "P" + i);
+        }
+    }
+
+    private static void awaitSync(ProductManager replica, ProductManager primary) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (replica.getLastSeq() < primary.getLastSeq()) {
+            assertTrue(System.currentTimeMillis() < deadline,
+                    "replica stuck at " + replica.getLastSeq() + " of " + primary.getLastSeq());
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/** Contains search: results in insertion order, no duplicates, across deletes and rebuilds. */
+class SearchIndexTest {
+
+    private static Product product(String id, String name) {
+        return new Product(id, name, 1, LocalDate.now());
+    }
+
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product p : products) ids.add(p.getProductID());
+        return ids;
+    }
+
+    @Test
+    void resultsFollowInsertionOrderAfterDeletes() {
+        SearchIndex index = new SearchIndex();
+        List<Product> all = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Product p = product("M" + i, "Milk " + i);
+            all.add(p);
+            index.add(p);
+        }
+        // delete a few, then add new ones: they must come last, not in the freed places
+        index.remove(all.get(2));
+        index.remove(all.get(5));
+        index.add(product("M20", "Milk 20"));
+        index.add(product("M2", "Milk again"));
+
+        assertEquals(List.of("M0", "M1", "M3", "M4", "M6", "M7", "M8", "M9", "M20", "M2"),
+                     ids(index.search("milk", 0, 100)));
+        assertEquals(List.of("M4", "M6"), ids(index.search("milk", 3, 2)));
+    }
+
+    @Test
+    void orderSurvivesRebuildAndIdNameOverlapGivesOneResult() {
+        SearchIndex index = new SearchIndex();
+        List<Product> all = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Product p = product("ABC" + i, "abc item " + i); // ID and name share trigrams
+            all.add(p);
+            index.add(p);
+        }
+        for (int i = 0; i < 80; i++) index.remove(all.get(i)); // forces rebuilds
+        index.add(product("ABCX", "late abc"));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 80; i < 100; i++) expected.add("ABC" + i);
+        expected.add("ABCX");
+        assertEquals(expected, ids(index.search("abc", 0, 1000)));
+        assertEquals(List.of("ABC95"), ids(index.search("abc95", 0, 10)));
+        assertEquals(List.of("ABC81"), ids(index.search("item 81", 0, 10)));
+    }
+}
@@ -0,0 +1,66 @@
+package coursework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/** The stockout index returns exactly what a scan of every product would. */
+class StockoutForecasterTest {
+
+    private static List<String> ids(List<StockoutForecaster.Forecast> forecasts) {
+        List<String> ids = new ArrayList<>();
+        for (StockoutForecaster.Forecast f : forecasts) ids.add(f.getProductID());
+        return ids;
+    }
+
+    // brute force: every product, same order as runningOutWithin
+    private static List<String> scan(StockoutForecaster forecaster, Map<String, Product> products, double days) {
+        List<StockoutForecaster.Forecast> all = new ArrayList<>();
+        for (Product p : products.values()) {
+            double left = forecaster.daysToStockout(p);
+            if (left <= days) {
+                all.add(new StockoutForecaster.Forecast(p.getProductID(), p.getProductQuantity(),
+                        forecaster.dailyRate(p.getProductID()), left));
+            }
+        }
+        all.sort((a, b) -> a.getDaysLeft() != b.getDaysLeft()
+                ? Double.compare(a.getDaysLeft(), b.getDaysLeft())
+                : a.getProductID().compareTo(b.getProductID()));
+        return ids(all);
+    }
+
+    @Test
+    void runningOutWithinMatchesAScan() {
+        StockoutForecaster forecaster = new StockoutForecaster();
+        Map<String, Product> products = new HashMap<>();
+        Random rnd = new Random(42);
+        int today = EpochDays.today();
+        for (int i = 0; i < 500; i++) {
+            Product p = new Product("P" + i, "Item " + i, rnd.nextInt(4) == 0 ? 0 : rnd.nextInt(2000));
+            products.put(p.getProductID(), p);
+            if (i % 10 == 0) continue; // never sold: no forecast
+            // sales spread over the last 90 days; old-only sellers have decayed since they were indexed
+            int lastDay = today - (i % 3 == 0 ? 30 + rnd.nextInt(60) : rnd.nextInt(5));
+            int sales = 1 + rnd.nextInt(20);
+            for (int s = sales; s > 0; s--) {
+                forecaster.record(p, ActivityType.REMOVE_FROM_STOCK, 1 + rnd.nextInt(40), lastDay - s * rnd.nextInt(3));
+            }
+            if (rnd.nextBoolean()) forecaster.record(p, ActivityType.ADD_TO_STOCK, 10, lastDay);
+        }
+        forecaster.remove("P1"); // deleted product
+        products.remove("P1");
+
+        for (double days : new double[] {0, 0.5, 1, 3, 7, 14, 30, 90, 365, 10_000}) {
+            List<String> expected = scan(forecaster, products, days);
+            assertEquals(expected, ids(forecaster.runningOutWithin(days, products::get)), "within " + days);
+        }
+        assertFalse(scan(forecaster, products, 30).isEmpty());
+    }
+}